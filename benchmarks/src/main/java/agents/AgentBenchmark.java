@@ -0,0 +1,87 @@
+package agents;
+
+import controller.SimController;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-agent phases of iteration, every operation processes all agents of board in single thread
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AgentBenchmark {
+    @Param({"1000", "10000", "50000"})
+    int agents;
+
+    @Param({"false", "true"})
+    boolean fastMath; // tables of forces instead of Math.exp (see ForceTables)
+
+    private SimController controller;
+    private ArrayList<BaseAgent> all;
+    private AgentsStore store;
+    private final ArrayList<BaseAgent> neighbors = new ArrayList<>();
+    private final ArrayList<Obstacle> obstacles = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        controller = BenchmarkScenario.create(agents, 1);
+        controller.getParameters().fastMath = fastMath;
+        controller.getBoard().updateNeighborsIndex();
+        all = controller.getBoard().getAgents();
+        store = controller.getBoard().getAgentsStore();
+        store.saveVelocities();
+        // fills lists of neighbors and obstacles of agents, used by detect benchmarks
+        for (BaseAgent agent : all) {
+            agent.updateState();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        controller.shutdown();
+    }
+
+    @Benchmark
+    public void updateState() {
+        for (int i = 0; i < all.size(); i++) {
+            all.get(i).updateState();
+        }
+    }
+
+    @Benchmark
+    public void findNeighbors(Blackhole hole) {
+        for (int i = 0; i < all.size(); i++) {
+            neighbors.clear();
+            obstacles.clear();
+            all.get(i).findNeighbors(-1, -1, neighbors, obstacles);
+            hole.consume(neighbors.size() + obstacles.size());
+        }
+    }
+
+    @Benchmark
+    public void detectOtherAgents() {
+        for (int i = 0; i < all.size(); i++) {
+            BaseAgent agent = all.get(i);
+            store.forceX[agent.id] = 0;
+            store.forceY[agent.id] = 0;
+            agent.detectOtherAgents(store.velocityX[agent.id], store.velocityY[agent.id]);
+        }
+    }
+
+    @Benchmark
+    public void detectObstacles() {
+        for (int i = 0; i < all.size(); i++) {
+            BaseAgent agent = all.get(i);
+            store.forceX[agent.id] = 0;
+            store.forceY[agent.id] = 0;
+            agent.detectObstacles(store.velocityX[agent.id], store.velocityY[agent.id]);
+        }
+    }
+}
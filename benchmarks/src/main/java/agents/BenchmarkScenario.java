@@ -0,0 +1,102 @@
+package agents;
+
+import controller.HeadlessSimulation;
+import controller.SimController;
+import org.apache.commons.math3.util.Pair;
+import simulation.Parameters;
+
+/**
+ * Standard scenarios used by benchmarks - default scenario of HeadlessSimulation with row of pillars in the crowd,
+ * board scaled to given number of agents. Random generators are seeded, so every run builds the same board.
+ */
+public final class BenchmarkScenario {
+    public static final long SEED = 20141105L; // seed of random generator
+    private static final double FIELDS_PER_AGENT = 280; // area of board per agent in default scenario (measured)
+    private static final double ASPECT = 753.0 / 644.0; // proportions of board (as in GUI)
+    private static final int PILLARS = 8; // number of obstacles in row
+
+    private BenchmarkScenario() {
+    }
+
+    /**
+     * @param agents - approximate number of agents
+     * @return size of board x
+     */
+    public static int widthFor(int agents) {
+        return (int) Math.sqrt(agents * FIELDS_PER_AGENT * ASPECT);
+    }
+
+    /**
+     * @param agents - approximate number of agents
+     * @return size of board y
+     */
+    public static int heightFor(int agents) {
+        return (int) (widthFor(agents) / ASPECT);
+    }
+
+    /**
+     * @return default parameters with fixed seed
+     */
+    public static Parameters parameters() {
+        Parameters parameters = new Parameters();
+        parameters.seed = SEED;
+        return parameters;
+    }
+
+    /**
+     * Creates controller with standard scenario, ready to be stepped
+     *
+     * @param agents  - approximate number of agents
+     * @param threads - number of threads used by controller
+     * @return controller
+     */
+    public static SimController create(int agents, int threads) {
+        int width = widthFor(agents), height = heightFor(agents);
+        SimController controller = new SimController(threads, parameters());
+        controller.initialize(width, height);
+        addPillars(controller, width, height);
+        HeadlessSimulation.buildDefaultScenario(controller, width, height);
+        controller.prepareSimulation();
+        controller.getBoard().updateNeighborsIndex();
+        return controller;
+    }
+
+    /**
+     * Creates controller with standard scenario, but police cordon of given number of rows, ready to be stepped
+     *
+     * @param agents     - approximate number of agents
+     * @param threads    - number of threads used by controller
+     * @param policeRows - number of rows of policemen
+     * @return controller
+     */
+    public static SimController create(int agents, int threads, int policeRows) {
+        int width = widthFor(agents), height = heightFor(agents);
+        SimController controller = new SimController(threads, parameters());
+        controller.initialize(width, height);
+        addPillars(controller, width, height);
+        int step = 2 * controller.getParameters().agentRadiusGUI;
+        controller.getParameters().desiredPoint = new Pair<>(width / 2, height / 20);
+        // fields closer than radius to border of area are not available, so area is one row higher on each side
+        controller.generateObjects("police", new Pair<>(width / 10, height * 4 / 10),
+                new Pair<>(width * 9 / 10, height * 4 / 10 + (policeRows + 2) * step));
+        controller.generateObjects("crowd", new Pair<>(width / 10, height * 6 / 10), new Pair<>(width * 9 / 10, height * 9 / 10));
+        controller.prepareSimulation();
+        controller.getBoard().updateNeighborsIndex();
+        return controller;
+    }
+
+    /**
+     * Adds row of square obstacles in the middle of crowd's area
+     *
+     * @param controller - controller with initialized board
+     * @param width      - size of board x
+     * @param height     - size of board y
+     */
+    static void addPillars(SimController controller, int width, int height) {
+        int size = Math.max(10, width / 60);
+        for (int i = 1; i <= PILLARS; i++) {
+            int x = width * i / (PILLARS + 1);
+            controller.generateObjects("obstacles", new Pair<>(x, height * 7 / 10), new Pair<>(x + size, height * 7 / 10 + size));
+        }
+    }
+}
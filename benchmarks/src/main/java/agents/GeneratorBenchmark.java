@@ -0,0 +1,47 @@
+package agents;
+
+import controller.SimController;
+import org.apache.commons.math3.util.Pair;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generation of crowd of standard scenario on board with pillars and police cordon
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class GeneratorBenchmark {
+    @Param({"1000", "10000", "50000"})
+    int agents;
+
+    private SimController controller;
+    private Pair<Integer, Integer> crowdLU, crowdRD; // area of crowd
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        int width = BenchmarkScenario.widthFor(agents), height = BenchmarkScenario.heightFor(agents);
+        controller = new SimController(1, BenchmarkScenario.parameters());
+        controller.initialize(width, height);
+        BenchmarkScenario.addPillars(controller, width, height);
+        controller.generateObjects("police", new Pair<>(width / 10, height * 4 / 10), new Pair<>(width * 9 / 10, height * 4 / 10 + 6 * controller.getParameters().agentRadiusGUI));
+        crowdLU = new Pair<>(width / 10, height * 6 / 10);
+        crowdRD = new Pair<>(width * 9 / 10, height * 9 / 10);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        controller.shutdown();
+    }
+
+    @Benchmark
+    public Board generateAgentsAndUpdateBoard() {
+        Board board = controller.getBoard();
+        SimulationObjectsGenerator.generateAgentsAndUpdateBoard(board, crowdLU, crowdRD);
+        return board;
+    }
+}
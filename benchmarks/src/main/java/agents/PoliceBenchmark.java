@@ -0,0 +1,98 @@
+package agents;
+
+import controller.SimController;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forces in police cordon - row of policemen closest to crowd is pushed towards desired point
+ * with force exceeding their reaction, so excess is transferred through cordon (several rows deep)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PoliceBenchmark {
+    private static final double PUSH = 5000; // force pushing front row (reaction force of policeman is at most 180)
+    private static final int ROWS = 5; // number of rows of police cordon
+
+    @Param({"1000", "10000", "50000"})
+    int agents;
+
+    private SimController controller;
+    private ArrayList<Policeman> policemen;
+    private final ArrayList<Policeman> front = new ArrayList<>(); // policemen pushed by crowd
+    private final PoliceForcePropagation propagation = new PoliceForcePropagation();
+    private final ForkJoinPool pool = new ForkJoinPool(1);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        controller = BenchmarkScenario.create(agents, 1, ROWS);
+        policemen = controller.getBoard().getPolicemen();
+        for (BaseAgent agent : controller.getBoard().getAgents()) {
+            agent.prepareNeighbors(); // policemen pass force to neighbors
+        }
+        int maxY = 0;
+        for (Policeman pol : policemen) {
+            maxY = Math.max(maxY, pol.getActualPositionY());
+        }
+        for (Policeman pol : policemen) {
+            if (pol.getActualPositionY() > maxY - 2 * controller.getParameters().agentRadius) {
+                front.add(pol);
+            }
+        }
+        push();
+        propagation.propagate(policemen, pool);
+        int transfers = 0;
+        for (Policeman pol : policemen) {
+            if (!front.contains(pol) && pol.getWasPushedItersAgo() == 0) {
+                transfers++;
+            }
+        }
+        if (transfers == 0) {
+            throw new IllegalStateException("No force is transferred in cordon");
+        }
+        System.out.println("Policemen: " + policemen.size() + ", in front row: " + front.size() + ", given force by others: " + transfers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        controller.shutdown();
+        pool.shutdown();
+    }
+
+    /**
+     * Pushes front row and resets other policemen
+     */
+    private void push() {
+        for (int i = 0; i < policemen.size(); i++) {
+            policemen.get(i).applyPushForces();
+        }
+        for (int i = 0; i < front.size(); i++) {
+            front.get(i).bePushed(0, -PUSH);
+        }
+    }
+
+    @Benchmark
+    public void considerForces() {
+        push();
+        for (int i = 0; i < front.size(); i++) {
+            Policeman pol = front.get(i);
+            while (pol != null && !pol.isConsidered()) {
+                pol.markConsidered();
+                pol = pol.considerForces();
+            }
+        }
+    }
+
+    @Benchmark
+    public void propagate() {
+        push();
+        propagation.propagate(policemen, pool);
+    }
+}
@@ -0,0 +1,63 @@
+package controller;
+
+import agents.BenchmarkScenario;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full iteration of simulation (SimController.step) on standard scenario
+ * <p/>
+ * Crowd is developed by warmup ticks once, then every iteration of benchmark starts from this state (restored
+ * from checkpoint), so score does not drift with number and length of iterations
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TickBenchmark {
+    private static final int WARMUP_TICKS = 50; // ticks developing crowd before state is saved
+
+    @Param({"1000", "10000", "50000"})
+    int agents;
+
+    @Param({"1", "4"})
+    int threads;
+
+    @Param({"0", "4"})
+    int neighborSkin; // margin of neighbors lists reused in next iterations (see NeighborLists), 0 - no lists
+
+    private SimController controller;
+    private File checkpoint; // state after warmup ticks
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        controller = BenchmarkScenario.create(agents, threads);
+        controller.getParameters().neighborSkin = neighborSkin;
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            controller.step();
+        }
+        checkpoint = File.createTempFile("tick-benchmark", ".bin");
+        controller.saveCheckpoint(checkpoint);
+    }
+
+    @Setup(Level.Iteration)
+    public void restore() throws IOException {
+        controller.restoreCheckpoint(checkpoint);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        controller.shutdown();
+        checkpoint.delete();
+    }
+
+    @Benchmark
+    public void step() {
+        controller.step();
+    }
+}
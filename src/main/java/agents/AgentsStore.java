@@ -0,0 +1,131 @@
+package agents;
+
+import utils.RandomStreams;
+
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays storage of agents' dynamic state
+ * <p/>
+ * Every agent owns one index (its id) in all arrays, so hot loops work on primitives only.
+ * Every agent has also its own stream of random numbers, so agents updated concurrently draw numbers independently
+ * of threads and order of updates.
+ */
+public class AgentsStore {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final long seed; // seed of agents' random streams
+    private int size = 0; // number of agents in store
+
+    double[] positionX = new double[INITIAL_CAPACITY];
+    double[] positionY = new double[INITIAL_CAPACITY];
+    double[] velocityX = new double[INITIAL_CAPACITY]; // velocity vector
+    double[] velocityY = new double[INITIAL_CAPACITY];
+    double[] previousVelocityX = new double[INITIAL_CAPACITY]; // velocity vector from previous iteration (read by neighbors)
+    double[] previousVelocityY = new double[INITIAL_CAPACITY];
+    double[] desiredVelocityX = new double[INITIAL_CAPACITY]; // basic desired velocity vector
+    double[] desiredVelocityY = new double[INITIAL_CAPACITY];
+    double[] accelerationX = new double[INITIAL_CAPACITY]; // acceleration vector
+    double[] accelerationY = new double[INITIAL_CAPACITY];
+    double[] forceX = new double[INITIAL_CAPACITY]; // social force (agents and obstacles) of current iteration
+    double[] forceY = new double[INITIAL_CAPACITY];
+    double[] pushedX = new double[INITIAL_CAPACITY]; // force used on agent by other agent
+    double[] pushedY = new double[INITIAL_CAPACITY];
+    double[] pushToApplyX = new double[INITIAL_CAPACITY]; // force used on agent by other agent in previous iteration
+    double[] pushToApplyY = new double[INITIAL_CAPACITY];
+    double[] mass = new double[INITIAL_CAPACITY]; // mass of agent
+    long[] randomState = new long[INITIAL_CAPACITY]; // state of agent's random stream
+
+    /**
+     * Creates empty store
+     *
+     * @param seed - seed of agents' random streams
+     */
+    public AgentsStore(long seed) {
+        this.seed = seed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getPositionX(int id) {
+        return positionX[id];
+    }
+
+    public double getPositionY(int id) {
+        return positionY[id];
+    }
+
+    public double getVelocityX(int id) {
+        return velocityX[id];
+    }
+
+    public double getVelocityY(int id) {
+        return velocityY[id];
+    }
+
+    /**
+     * Reserves place for new agent
+     *
+     * @param x - position on board x
+     * @param y - position on board y
+     * @return id of new agent
+     */
+    int add(int x, int y) {
+        if (size == positionX.length) {
+            grow(size * 2);
+        }
+        int id = size++;
+        positionX[id] = x;
+        positionY[id] = y;
+        randomState[id] = RandomStreams.initialState(seed, id);
+        return id;
+    }
+
+    /**
+     * Copies velocities of all agents to previous velocities, has to be called before agents are updated concurrently
+     */
+    public void saveVelocities() {
+        System.arraycopy(velocityX, 0, previousVelocityX, 0, size);
+        System.arraycopy(velocityY, 0, previousVelocityY, 0, size);
+    }
+
+    /**
+     * Draws random boolean from agent's stream
+     *
+     * @param id - id of agent
+     * @return random boolean
+     */
+    boolean nextBoolean(int id) {
+        long state = RandomStreams.advance(randomState[id]);
+        randomState[id] = state;
+        return RandomStreams.mix(state) < 0;
+    }
+
+    /**
+     * Enlarges all arrays to given capacity
+     *
+     * @param capacity - new capacity
+     */
+    private void grow(int capacity) {
+        positionX = Arrays.copyOf(positionX, capacity);
+        positionY = Arrays.copyOf(positionY, capacity);
+        velocityX = Arrays.copyOf(velocityX, capacity);
+        velocityY = Arrays.copyOf(velocityY, capacity);
+        previousVelocityX = Arrays.copyOf(previousVelocityX, capacity);
+        previousVelocityY = Arrays.copyOf(previousVelocityY, capacity);
+        desiredVelocityX = Arrays.copyOf(desiredVelocityX, capacity);
+        desiredVelocityY = Arrays.copyOf(desiredVelocityY, capacity);
+        accelerationX = Arrays.copyOf(accelerationX, capacity);
+        accelerationY = Arrays.copyOf(accelerationY, capacity);
+        forceX = Arrays.copyOf(forceX, capacity);
+        forceY = Arrays.copyOf(forceY, capacity);
+        pushedX = Arrays.copyOf(pushedX, capacity);
+        pushedY = Arrays.copyOf(pushedY, capacity);
+        pushToApplyX = Arrays.copyOf(pushToApplyX, capacity);
+        pushToApplyY = Arrays.copyOf(pushToApplyY, capacity);
+        mass = Arrays.copyOf(mass, capacity);
+        randomState = Arrays.copyOf(randomState, capacity);
+    }
+}
@@ -1,40 +1,55 @@
 package agents;
 
 import org.apache.commons.math3.util.Pair;
-import org.jscience.mathematics.number.Float64;
-import org.jscience.mathematics.vector.Float64Vector;
 import simulation.Constants;
 import simulation.Parameters;
 import utils.Utils;
 
 import java.awt.*;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Model of base agent
+ * <p/>
+ * Dynamic state (position, velocity, acceleration, forces, mass) is kept in board's AgentsStore under agent's id
  */
 public abstract class BaseAgent extends BasicSimObject {
-    private final Board board;
+    private static final int PAIR_VALUES = 4; // distance, normal vector (x, y) and interact force of pair
 
-    double m = 60.0;  // mass of agent
-    LinkedList<BaseAgent> neighbors = new LinkedList<>(); // list of neighbors (agents in range of view)
-    private LinkedList<Obstacle> obstacles = new LinkedList<>();  // list of obstacles (in range of view)
+    private final Board board;
+    final AgentsStore store; // storage of agents' state
+    final int id; // index of agent in store
+    final Parameters parameters; // parameters of simulation
+
+    ArrayList<BaseAgent> neighbors = new ArrayList<>(); // list of neighbors (agents in range of view)
+    private ArrayList<Obstacle> obstacles = new ArrayList<>();  // list of obstacles (in range of view)
+    private int[] sortedIds = new int[0]; // temporary ids of found neighbors (see sortById)
+    private int[] cachedIds = new int[0]; // ids of agents in range of view enlarged by skin, ascending (Verlet list, see NeighborLists)
+    private int cachedCount = 0, rebuiltCount = 0; // number of cached ids, now and at the last rebuild
+    private int rebuildExamined = 0; // number of agents examined at the last rebuild, not reported yet
+    private final ArrayList<Obstacle> cachedObstacles = new ArrayList<>(); // obstacles in range of view enlarged by skin
+    private double[] pairs = new double[0]; // quantities of pairs with neighbors of higher ids (PAIR_VALUES per neighbor, see computePairs)
+    private int pairsStamp = -1; // stamp of index (see Board.getIndexStamp) when pairs were computed
+    private int[] pairIds = new int[0]; // ids of neighbors of higher ids, hash table with linear probing (-1 - empty)
+    private int[] pairIndexes = new int[0]; // indexes of neighbors of pairIds in list of neighbors
+    private int pairBits = 0; // used size of hash table is 2^pairBits
+    double pairDistance, pairNormalX, pairNormalY, pairInteract; // quantities of pair loaded by loadPair
 
-    Float64Vector velocity = Float64Vector.valueOf(0.8, 0.8); // velocity vector
-    Float64Vector basicDesiredVelocity = Float64Vector.valueOf(0.8, 0.8); // velocity vector
-    Float64Vector acceleration = Float64Vector.valueOf(0.0, 0.0); // acceleration vector
-    Float64Vector pushed = Float64Vector.valueOf(0.0, 0.0); // force used on agent by other agent
-    Float64Vector pushToApply = Float64Vector.valueOf(0.0, 0.0); // force used on agent by other agent
     AgentsTypes type; // type of agent
     Color colour = Color.GRAY;  // color
-    AgentsStates state; // state of agent
+    AgentsStates state = AgentsStates.NONE; // state of agent
     int itersWithoutMove = 0; // number of iterations without any move
+    private int neighborsExamined = 0; // number of agents examined while finding neighbors in last update of state
+    private boolean moveBlocked = false; // if last move was blocked by other object
 
     public AgentsStates getState() {
         return state;
     }
 
-    AgentsTypes getType() {
+    public AgentsTypes getType() {
         return type;
     }
 
@@ -42,21 +57,88 @@ public abstract class BaseAgent extends BasicSimObject {
         return colour;
     }
 
-    Float64Vector getVelocity() {
-        return velocity;
+    public int getId() {
+        return id;
+    }
+
+    public int getNeighborsExamined() {
+        return neighborsExamined;
+    }
+
+    public boolean isMoveBlocked() {
+        return moveBlocked;
     }
 
-    Float64Vector getAcceleration() {
-        return acceleration;
+    /**
+     * @return velocity from previous iteration, x coordinate (stable while agents are updated)
+     */
+    double getPreviousVelocityX() {
+        return store.previousVelocityX[id];
+    }
+
+    /**
+     * @return velocity from previous iteration, y coordinate (stable while agents are updated)
+     */
+    double getPreviousVelocityY() {
+        return store.previousVelocityY[id];
+    }
+
+    /**
+     * @return length of velocity vector
+     */
+    double getSpeed() {
+        return Math.sqrt(store.velocityX[id] * store.velocityX[id] + store.velocityY[id] * store.velocityY[id]);
+    }
+
+    /**
+     * @return length of velocity vector from previous iteration
+     */
+    double getPreviousSpeed() {
+        double vx = store.previousVelocityX[id], vy = store.previousVelocityY[id];
+        return Math.sqrt(vx * vx + vy * vy);
+    }
+
+    void setActualPositionX(int actualPositionX) {
+        store.positionX[id] = actualPositionX;
+    }
+
+    void setActualPositionY(int actualPositionY) {
+        store.positionY[id] = actualPositionY;
+    }
+
+    @Override
+    public int getActualPositionX() {
+        return (int) store.positionX[id];
+    }
+
+    @Override
+    public int getActualPositionY() {
+        return (int) store.positionY[id];
+    }
+
+    /**
+     * @return exact position of agent, x coordinate (integral unless parameters.continuousPositions is set)
+     */
+    public double getPositionX() {
+        return store.positionX[id];
+    }
+
+    /**
+     * @return exact position of agent, y coordinate (integral unless parameters.continuousPositions is set)
+     */
+    public double getPositionY() {
+        return store.positionY[id];
     }
 
     /**
      * Uses other agent's force on this agent.
      *
-     * @param force - force (vector) which other uses on this agent
+     * @param forceX - force which other uses on this agent, x coordinate
+     * @param forceY - y coordinate
      */
-    void bePushed(Float64Vector force) {
-        pushed = pushed.plus(force);
+    void bePushed(double forceX, double forceY) {
+        store.pushedX[id] += forceX;
+        store.pushedY[id] += forceY;
     }
 
     /**
@@ -67,70 +149,201 @@ public abstract class BaseAgent extends BasicSimObject {
      * @param board - simulation board
      */
     BaseAgent(int x, int y, Board board) {
-        setActualPositionX(x);
-        setActualPositionY(y);
-        agent = true;
         this.board = board;
-        m += Utils.rand.nextGaussian() * 15;
+        store = board.getAgentsStore();
+        parameters = board.getParameters();
+        id = store.add(x, y);
+        agent = true;
+        store.velocityX[id] = 0.8;
+        store.velocityY[id] = 0.8;
+        store.desiredVelocityX[id] = 0.8;
+        store.desiredVelocityY[id] = 0.8;
+        double m = 60.0 + board.getRandom().nextGaussian() * 15;
         if (m > 90)
             m = 90;
         else if (m < 45)
             m = 45;
+        store.mass[id] = m;
     }
 
     /**
-     * Find agents and obstacles in range of view
+     * Find agents and obstacles in range of view (uses board's index, see Board.updateNeighborsIndex)
+     * <p/>
+     * Found agents are sorted by ids and obstacles by positions, so order of summing forces (and choice between
+     * equally good neighbors) does not depend on layout of index nor on cached lists of neighbors
      *
-     * @param x         - x coordinate to start looking for, if set to -1 uses position X of agent
-     * @param y         - y coordinate to start looking for, if set to -1 uses position Y of agent
+     * @param x         - x coordinate to start looking for, if set to -1 uses new position X of agent
+     * @param y         - y coordinate to start looking for, if set to -1 uses new position Y of agent
      * @param neighbors - list to insert neighbors
      * @param obstacles - list to insert obstacles
+     * @return number of examined agents
      */
-    void findNeighbors(int x, int y, LinkedList<BaseAgent> neighbors, LinkedList<Obstacle> obstacles) {
+    int findNeighbors(double x, double y, ArrayList<BaseAgent> neighbors, ArrayList<Obstacle> obstacles) {
         if (x == -1) {
-            x = getNewPositionX();
+            x = nextPositionX();
         }
         if (y == -1) {
-            y = getNewPositionY();
-        }
-
-        int startX = (x - Parameters.viewRange > 0) ? x - Parameters.viewRange : 0;
-        int stopX = (x + Parameters.viewRange < board.getSizeX() - 1) ? x + Parameters.viewRange : board.getSizeX() - 1;
-        int startY = (y - Parameters.viewRange > 0) ? y - Parameters.viewRange : 0;
-        int stopY = (y + Parameters.viewRange < board.getSizeY() - 1) ? y + Parameters.viewRange : board.getSizeY() - 1;
-        for (int i = startX; i <= stopX; i++) {
-            for (int j = startY; j <= stopY; j++) {
-                if ((Math.pow(x - i, 2) + Math.pow(y - j, 2)) < Parameters.viewRange * Parameters.viewRange) {
-                    BasicSimObject temp = board.getField(i, j);
-                    if (temp != null) {
-                        if (temp.isAgent()) {
-                            if (this != temp)
-                                neighbors.add((BaseAgent) temp);
-                        } else {
-                            obstacles.add((Obstacle) temp);
-                        }
-                    }
-                }
+            y = nextPositionY();
+        }
+
+        int examined = board.findObjectsInRange(x, y, parameters.viewRange, this, neighbors, obstacles);
+        sortById(neighbors);
+        Collections.sort(obstacles, Obstacle.BY_POSITION);
+        return examined;
+    }
+
+    /**
+     * Sorts agents by ids (sorting primitive ids is much cheaper than sorting agents with comparator)
+     *
+     * @param agents - agents to sort
+     */
+    private void sortById(ArrayList<BaseAgent> agents) {
+        int count = agents.size();
+        if (count < 2) {
+            return;
+        }
+        if (sortedIds.length < count) {
+            sortedIds = new int[count * 2];
+        }
+        boolean sorted = true;
+        for (int i = 0; i < count; i++) {
+            sortedIds[i] = agents.get(i).id;
+            sorted &= i == 0 || sortedIds[i - 1] < sortedIds[i];
+        }
+        if (!sorted) {
+            Arrays.sort(sortedIds, 0, count);
+            List<BaseAgent> all = board.getAgents();
+            for (int i = 0; i < count; i++) {
+                agents.set(i, all.get(sortedIds[i]));
             }
         }
     }
 
     /**
-     * Counts the direction where agent should go to achieve desired point
+     * Finds agents and obstacles in range of view of new position, filtering lists cached with skin (Verlet lists)
+     * <p/>
+     * Cached lists are sorted (agents by ids), so found neighbors are the same as found by findNeighbors
+     * and do not depend on the moment of rebuilding lists.
+     *
+     * @param neighbors - list to insert neighbors
+     * @param obstacles - list to insert obstacles
+     * @return number of examined agents
+     */
+    int findCachedNeighbors(ArrayList<BaseAgent> neighbors, ArrayList<Obstacle> obstacles) {
+        double x = nextPositionX(), y = nextPositionY();
+        if (board.isNeighborSearchDirect(id)) {
+            return findNeighbors(x, y, neighbors, obstacles);
+        }
+        int squareRange = parameters.viewRange * parameters.viewRange;
+        double[] positionX = store.positionX, positionY = store.positionY;
+        List<BaseAgent> agents = board.getAgents();
+        for (int i = 0; i < cachedCount; i++) {
+            int other = cachedIds[i];
+            double dx = x - positionX[other], dy = y - positionY[other];
+            if (dx * dx + dy * dy < squareRange) {
+                neighbors.add(agents.get(other));
+            }
+        }
+        for (int i = 0; i < cachedObstacles.size(); i++) {
+            Obstacle obstacle = cachedObstacles.get(i);
+            if (obstacle.squareDistanceTo(x, y) < squareRange) {
+                obstacles.add(obstacle);
+            }
+        }
+        int examined = rebuildExamined + cachedCount;
+        rebuildExamined = 0;
+        return examined;
+    }
+
+    /**
+     * Rebuilds cached lists with agents and obstacles in range of view enlarged by skin around current position
+     * (see NeighborLists)
+     *
+     * @param found - temporary list for found agents
+     */
+    void rebuildCachedNeighbors(ArrayList<BaseAgent> found) {
+        found.clear();
+        cachedObstacles.clear();
+        rebuildExamined += board.findObjectsInRange(getPositionX(), getPositionY(), parameters.viewRange + parameters.neighborSkin,
+                this, found, cachedObstacles);
+        Collections.sort(cachedObstacles, Obstacle.BY_POSITION);
+        if (cachedIds.length < found.size()) {
+            cachedIds = new int[found.size() * 2];
+        }
+        for (int i = 0; i < found.size(); i++) {
+            cachedIds[i] = found.get(i).id;
+        }
+        cachedCount = rebuiltCount = found.size();
+        Arrays.sort(cachedIds, 0, cachedCount);
+    }
+
+    /**
+     * Adds agent to cached list (if it is not there yet), keeping ids sorted
+     *
+     * @param other - id of agent
+     */
+    void addCachedNeighbor(int other) {
+        int index = Arrays.binarySearch(cachedIds, 0, cachedCount, other);
+        if (index >= 0) {
+            return;
+        }
+        index = -index - 1;
+        if (cachedCount == cachedIds.length) {
+            cachedIds = Arrays.copyOf(cachedIds, Math.max(16, cachedCount * 2));
+        }
+        System.arraycopy(cachedIds, index, cachedIds, index + 1, cachedCount - index);
+        cachedIds[index] = other;
+        cachedCount++;
+    }
+
+    int getCachedCount() {
+        return cachedCount;
+    }
+
+    int getCachedId(int index) {
+        return cachedIds[index];
+    }
+
+    /**
+     * @return true if so many agents were added to cached list since its rebuild, that filtering it costs too much
+     */
+    boolean isCachedListOverfull() {
+        return cachedCount > Math.max(2 * rebuiltCount, rebuiltCount + 16);
+    }
+
+    /**
+     * Counts the direction where agent should go to achieve desired point and stores it as desired velocity
      *
      * @param desiredPoint - point to achieve
      */
-    Float64Vector findDesiredDirection(Pair<Integer, Integer> desiredPoint) {
+    void findDesiredDirection(Pair<Integer, Integer> desiredPoint) {
         int desiredX = desiredPoint.getFirst(), desiredY = desiredPoint.getSecond();
-        if (desiredX == getActualPositionX() && desiredY == getActualPositionY()) {
-            return Float64Vector.valueOf(0, 0);
+        double x = getPositionX(), y = getPositionY();
+        if (desiredX == x && desiredY == y) {
+            store.desiredVelocityX[id] = 0;
+            store.desiredVelocityY[id] = 0;
+            return;
         }
-        return Float64Vector.valueOf(desiredX - getActualPositionX(), desiredY - getActualPositionY()).times(1 / Math.sqrt(Utils.calculateSquareDistancePoints(desiredX, desiredY, getActualPositionX(), getActualPositionY())));
+        double length = Math.sqrt(Utils.calculateSquareDistancePoints(desiredX, desiredY, x, y));
+        store.desiredVelocityX[id] = (desiredX - x) / length;
+        store.desiredVelocityY[id] = (desiredY - y) / length;
+    }
+
+    /**
+     * Sets velocity to basic desired velocity multiplied by given factor
+     *
+     * @param factor - multiplier
+     */
+    void setVelocityToDesired(double factor) {
+        store.velocityX[id] = store.desiredVelocityX[id] * factor;
+        store.velocityY[id] = store.desiredVelocityY[id] * factor;
     }
 
     public void applyPushForces() {
-        pushToApply = pushed;
-        pushed = Float64Vector.valueOf(0, 0);
+        store.pushToApplyX[id] = store.pushedX[id];
+        store.pushToApplyY[id] = store.pushedY[id];
+        store.pushedX[id] = 0;
+        store.pushedY[id] = 0;
     }
 
     /**
@@ -139,10 +352,12 @@ public abstract class BaseAgent extends BasicSimObject {
      * @return closest agent
      */
     BaseAgent findClosestInDesiredDirection() {
-        double actualMin = 4 * Parameters.agentRadius * Parameters.agentRadius;
+        double actualMin = 4 * parameters.agentRadius * parameters.agentRadius;
         BaseAgent actualClosest = null;
-        for (BaseAgent neighbor : neighbors) {
-            double distance = utils.Utils.calculateSquareDistancePoints(getNewPositionX(), getNewPositionY(), neighbor.getActualPositionX(), neighbor.getActualPositionY());
+        double x = nextPositionX(), y = nextPositionY();
+        for (int i = 0; i < neighbors.size(); i++) {
+            BaseAgent neighbor = neighbors.get(i);
+            double distance = Utils.calculateSquareDistancePoints(x, y, neighbor.getPositionX(), neighbor.getPositionY());
             if (distance < actualMin) {
                 actualMin = distance;
                 actualClosest = neighbor;
@@ -154,225 +369,412 @@ public abstract class BaseAgent extends BasicSimObject {
     /**
      * Counts new velocity (intended by agent) basing on neighbors velocities
      *
-     * @param oldVelocity - velocity vector from previous iteration
+     * @param oldVelocityX - velocity vector from previous iteration, x coordinate
+     * @param oldVelocityY - y coordinate
      */
-    protected abstract void chooseVelocity(Float64Vector oldVelocity);
+    protected abstract void chooseVelocity(double oldVelocityX, double oldVelocityY);
+
+    /**
+     * Sets velocity to mean of neighbors velocities and basic desired velocity, scaled to length of old velocity
+     * <p/>
+     * If agent is stuck for more than itersLimit iterations and resultant velocity is low, agent goes with basic desired velocity
+     *
+     * @param oldVelocityX - velocity vector from previous iteration, x coordinate
+     * @param oldVelocityY - y coordinate
+     * @param itersLimit   - limit of iterations without move
+     * @param maxVelocity  - max velocity of agent
+     */
+    void followNeighbors(double oldVelocityX, double oldVelocityY, int itersLimit, double maxVelocity) {
+        double desiredX = store.desiredVelocityX[id], desiredY = store.desiredVelocityY[id];
+        double sumX = 0, sumY = 0, sumOfValues = 0;
+        for (int i = 0; i < neighbors.size(); i++) {
+            BaseAgent neighbor = neighbors.get(i);
+            sumX += neighbor.getPreviousVelocityX();
+            sumY += neighbor.getPreviousVelocityY();
+            sumOfValues += neighbor.getPreviousSpeed();
+        }
+        sumOfValues += Math.sqrt(desiredX * desiredX + desiredY * desiredY);
+        double scale = Math.sqrt(oldVelocityX * oldVelocityX + oldVelocityY * oldVelocityY) / sumOfValues;
+        double velocityX = (sumX + desiredX) * scale, velocityY = (sumY + desiredY) * scale;
+        if (itersWithoutMove > itersLimit && Math.sqrt(velocityX * velocityX + velocityY * velocityY) < maxVelocity * 0.5) {
+            velocityX = desiredX;
+            velocityY = desiredY;
+        }
+        store.velocityX[id] = velocityX;
+        store.velocityY[id] = velocityY;
+    }
 
     /**
      * Method responsible for molecular dynamics
      * <p/>
      * Implementation of Helbing's model, includes willed velocity, other agents and obstacles in neighbourhood
      *
-     * @param oldVelocity - velocity vector from previous iteration
+     * @param oldVelocityX - velocity vector from previous iteration, x coordinate
+     * @param oldVelocityY - y coordinate
      */
-    void socialForces(Float64Vector oldVelocity) {
-        acceleration = velocity.minus(oldVelocity).times(1.0 / Constants.timePeriod);
-        acceleration = acceleration.plus(detectOtherAgents(oldVelocity).times(1.0 / m));
-        acceleration = acceleration.plus(detectObstacles(oldVelocity).times(1.0 / m));
-        acceleration = acceleration.plus(pushToApply.times(1.0 / m));
+    void socialForces(double oldVelocityX, double oldVelocityY) {
+        store.forceX[id] = store.pushToApplyX[id];
+        store.forceY[id] = store.pushToApplyY[id];
+        detectOtherAgents(oldVelocityX, oldVelocityY);
+        detectObstacles(oldVelocityX, oldVelocityY);
+        applySocialForce(oldVelocityX, oldVelocityY);
     }
 
     /**
-     * Calculates obstacles' impact on agent
+     * Sets acceleration from change of velocity and force accumulated in store
      *
-     * @param oldVelocity - velocity vector from previous iteration
-     * @return vector representing impact force
-     */
-    Float64Vector detectObstacles(Float64Vector oldVelocity) {
-        int tempX = getActualPositionX(), tempY = getActualPositionY();
-        Float64Vector toReturn = Float64Vector.valueOf(0.0, 0.0);
-        for (Obstacle act : obstacles) {
-            double dist = Math.sqrt(Utils.calculateSquareDistancePoints(tempX, tempY, act.getActualPositionX(), act.getActualPositionY()));
-            // interact
-            Float64Vector nij = calculateNIJVector(act);
-            Float64Vector interactForce = calculateInteractForceO(nij, dist);
-            //body
-            if (Parameters.agentRadius > dist) {
-                Float64Vector bodyForce = calculateBodyForceO(nij, dist);
-                Float64Vector slidForce = calculateSlidForceO(nij, oldVelocity, dist);
-                toReturn = toReturn.plus(interactForce).plus(bodyForce).plus(slidForce);
-            } else {
-                toReturn = toReturn.plus(interactForce);
-            }
-        }
-        return toReturn;
+     * @param oldVelocityX - velocity vector from previous iteration, x coordinate
+     * @param oldVelocityY - y coordinate
+     */
+    void applySocialForce(double oldVelocityX, double oldVelocityY) {
+        double m = store.mass[id];
+        store.accelerationX[id] = (store.velocityX[id] - oldVelocityX) / Constants.timePeriod + store.forceX[id] / m;
+        store.accelerationY[id] = (store.velocityY[id] - oldVelocityY) / Constants.timePeriod + store.forceY[id] / m;
     }
 
     /**
-     * Calculates agents' impact on agent
+     * Calculates obstacles' impact on agent and adds it to force accumulated in store
+     * <p/>
+     * Every obstacle (rectangle) acts from its point closest to agent
      *
-     * @param oldVelocity - velocity vector from previous iteration
-     * @return vector representing impact force
+     * @param oldVelocityX - velocity vector from previous iteration, x coordinate
+     * @param oldVelocityY - y coordinate
      */
-    Float64Vector detectOtherAgents(Float64Vector oldVelocity) {
-        Float64Vector toReturn = Float64Vector.valueOf(0.0, 0.0);
-        for (BaseAgent act : neighbors) {
-            double dist = Math.sqrt(Utils.calculateSquareDistancePoints(getActualPositionX(), getActualPositionY(), act.getActualPositionX(), act.getActualPositionY()));
+    void detectObstacles(double oldVelocityX, double oldVelocityY) {
+        double tempX = getPositionX(), tempY = getPositionY();
+        double oldSpeed = Math.sqrt(oldVelocityX * oldVelocityX + oldVelocityY * oldVelocityY);
+        double forceX = 0, forceY = 0;
+        for (int i = 0; i < obstacles.size(); i++) {
+            Obstacle act = obstacles.get(i);
+            double closestX = act.closestX(tempX), closestY = act.closestY(tempY);
+            if (closestX == tempX && closestY == tempY) {
+                continue; // agent inside of obstacle, direction is undefined
+            }
+            double dist = Math.sqrt(Utils.calculateSquareDistancePoints(tempX, tempY, closestX, closestY));
+            double nx = (tempX - closestX) / dist, ny = (tempY - closestY) / dist;
             // interact
-            Float64Vector nij = calculateNIJVector(act);
-            Float64Vector interactForce = calculateInteractForce(nij, dist);
+            double value = calculateInteractForceO(dist);
             //body
-            if (Parameters.agentRadius + Parameters.agentRadius > dist) {
-                Float64Vector bodyForce = calculateBodyForce(nij, dist);
-                Float64Vector slidForce = calculateSlidForce(nij, act, oldVelocity, dist);
-                toReturn = toReturn.plus(interactForce).plus(bodyForce).plus(slidForce);
-            } else {
-                toReturn = toReturn.plus(interactForce);
+            if (parameters.agentRadius > dist) {
+                value += calculateBodyForceO(dist);
+                double slid = calculateSlidForceO(oldSpeed, dist);
+                forceX += -ny * slid;
+                forceY += nx * slid;
             }
+            forceX += nx * value;
+            forceY += ny * value;
         }
-        return toReturn;
+        store.forceX[id] += forceX;
+        store.forceY[id] += forceY;
     }
 
     /**
-     * From Helbing's model
+     * Calculates agents' impact on agent and adds it to force accumulated in store
      *
-     * @param obj - simulation object
-     * @return nij vector
+     * @param oldVelocityX - velocity vector from previous iteration, x coordinate
+     * @param oldVelocityY - y coordinate
      */
-    Float64Vector calculateNIJVector(BasicSimObject obj) {
-        Float64Vector nij = Float64Vector.valueOf(getActualPositionX() - obj.getActualPositionX(), getActualPositionY() - obj.getActualPositionY());
-        return nij.times(1.0 / nij.normValue());
+    void detectOtherAgents(double oldVelocityX, double oldVelocityY) {
+        double oldSpeed = Math.sqrt(oldVelocityX * oldVelocityX + oldVelocityY * oldVelocityY);
+        double forceX = 0, forceY = 0;
+        for (int i = 0; i < neighbors.size(); i++) {
+            BaseAgent act = neighbors.get(i);
+            loadPair(i, act);
+            double dist = pairDistance, nx = pairNormalX, ny = pairNormalY;
+            // interact
+            double value = pairInteract;
+            //body
+            if (parameters.agentRadius + parameters.agentRadius > dist) {
+                value += calculateBodyForce(dist);
+                double slid = calculateSlidForce(act, oldSpeed, dist);
+                forceX += -ny * slid;
+                forceY += nx * slid;
+            }
+            forceX += nx * value;
+            forceY += ny * value;
+        }
+        store.forceX[id] += forceX;
+        store.forceY[id] += forceY;
     }
 
     /**
      * From Helbing's model
      *
-     * @param nij  - nij vector
      * @param dist - distance between considered agents
-     * @return internal force vector
+     * @return value of internal force (in direction of nij vector)
      */
-    Float64Vector calculateInteractForce(Float64Vector nij, double dist) {
-        return nij.times(Constants.a).times(Math.exp((Parameters.agentRadius + Parameters.agentRadius - dist) / Constants.b));
+    double calculateInteractForce(double dist) {
+        ForceTables tables = board.getForceTables();
+        if (tables != null) {
+            return tables.interact(dist);
+        }
+        return Constants.a * Math.exp((parameters.agentRadius + parameters.agentRadius - dist) / Constants.b);
     }
 
     /**
      * From Helbing's model
      *
-     * @param nij  - nij vector
      * @param dist - distance between considered agents
-     * @return body force vector
+     * @return value of body force (in direction of nij vector)
      */
-    Float64Vector calculateBodyForce(Float64Vector nij, double dist) {
-        return nij.times(Constants.k).times(Parameters.agentRadius + Parameters.agentRadius - dist);
+    double calculateBodyForce(double dist) {
+        return Constants.k * (parameters.agentRadius + parameters.agentRadius - dist);
     }
 
     /**
      * From Helbing's model
      *
-     * @param nij         - nij vector
-     * @param agent       - considered second agent
-     * @param oldVelocity - old velocity of current agent
-     * @param dist        - distance between considered agents
-     * @return slid force vector
+     * @param agent    - considered second agent
+     * @param oldSpeed - length of old velocity of current agent
+     * @param dist     - distance between considered agents
+     * @return value of slid force (in direction of tangential vector (-nij_y, nij_x))
      */
-    Float64Vector calculateSlidForce(Float64Vector nij, BaseAgent agent, Float64Vector oldVelocity, double dist) {
-        return Float64Vector.valueOf(-1 * nij.get(1).doubleValue(), nij.get(0).doubleValue()).times(agent.getVelocity().normValue() - oldVelocity.normValue()).times(Constants.k2).times(Parameters.agentRadius + Parameters.agentRadius - dist);
+    double calculateSlidForce(BaseAgent agent, double oldSpeed, double dist) {
+        return (agent.getPreviousSpeed() - oldSpeed) * Constants.k2 * (parameters.agentRadius + parameters.agentRadius - dist);
     }
 
     /**
      * From Helbing's model for obstacles
      *
-     * @param nij  - nij vector
      * @param dist - distance between considered agent and obstacle
-     * @return interact force vector
+     * @return value of interact force (in direction of nij vector)
      */
-    Float64Vector calculateInteractForceO(Float64Vector nij, double dist) {
-        return nij.times(Constants.aw).times(Math.exp((Parameters.agentRadius - dist) / Constants.bw));
+    double calculateInteractForceO(double dist) {
+        ForceTables tables = board.getForceTables();
+        if (tables != null) {
+            return tables.interactObstacle(dist);
+        }
+        return Constants.aw * Math.exp((parameters.agentRadius - dist) / Constants.bw);
     }
 
     /**
      * From Helbing's model for obstacles
      *
-     * @param nij  - nij vector
      * @param dist - distance between considered agent and obstacle
-     * @return body force vector
+     * @return value of body force (in direction of nij vector)
      */
-    Float64Vector calculateBodyForceO(Float64Vector nij, double dist) {
-        return nij.times(Constants.k).times(Parameters.agentRadius - dist);
+    double calculateBodyForceO(double dist) {
+        return Constants.k * (parameters.agentRadius - dist);
     }
 
     /**
      * From Helbing's model for obstacles
      *
-     * @param nij         - nij vector
-     * @param oldVelocity -  old velocity of current agent
-     * @param dist        - distance between considered agent and obstacle
-     * @return slid force vector
+     * @param oldSpeed - length of old velocity of current agent
+     * @param dist     - distance between considered agent and obstacle
+     * @return value of slid force (in direction of tangential vector (-nij_y, nij_x))
      */
-    Float64Vector calculateSlidForceO(Float64Vector nij, Float64Vector oldVelocity, double dist) {
-        return Float64Vector.valueOf(-1 * nij.get(1).doubleValue(), nij.get(0).doubleValue()).times(-oldVelocity.normValue()).times(Constants.k2).times(Parameters.agentRadius - dist);
+    double calculateSlidForceO(double oldSpeed, double dist) {
+        return -oldSpeed * Constants.k2 * (parameters.agentRadius - dist);
     }
 
     /**
      * Calculates new position of agent (based on velocity)
+     * <p/>
+     * On grid move is rounded to whole fields, with continuous positions it is exact
      *
      * @return new X coordinate
      */
-    private int getNewPositionX() {
-        return getActualPositionX() + (int) (Math.round(velocity.get(0).doubleValue() * Constants.timePeriod));
+    double nextPositionX() {
+        if (parameters.continuousPositions) {
+            return store.positionX[id] + store.velocityX[id] * Constants.timePeriod;
+        }
+        return getActualPositionX() + Math.round(store.velocityX[id] * Constants.timePeriod);
     }
 
     /**
      * Calculates new position of agent (based on velocity)
+     * <p/>
+     * On grid move is rounded to whole fields, with continuous positions it is exact
      *
      * @return new Y coordinate
      */
-    private int getNewPositionY() {
-        return getActualPositionY() + (int) (Math.round(velocity.get(1).doubleValue() * Constants.timePeriod));
+    double nextPositionY() {
+        if (parameters.continuousPositions) {
+            return store.positionY[id] + store.velocityY[id] * Constants.timePeriod;
+        }
+        return getActualPositionY() + Math.round(store.velocityY[id] * Constants.timePeriod);
+    }
+
+    /**
+     * @return field of new position of agent, x coordinate
+     */
+    int getNewPositionX() {
+        return (int) nextPositionX();
+    }
+
+    /**
+     * @return field of new position of agent, y coordinate
+     */
+    int getNewPositionY() {
+        return (int) nextPositionY();
     }
 
     /**
      * Function move agent on the board
      * <p/>
-     * Firstly finds obstacles and neighbors, chooses new desired velocity and includes social forces (it's updating); at the end changes position of agent on board
+     * Firstly finds obstacles and neighbors, chooses new desired velocity and includes social forces (it's updating); then changes position of agent on board
+     * and interacts with others
      */
     public void move() {
         updateState();
         changePosition();
+        interact();
     }
 
     /**
-     * Adds fluctuations to given vector (every dimensions)
+     * Sets velocity to basic desired velocity multiplied by factor, with added fluctuations (every dimension)
      *
-     * @param vector           - input vector
+     * @param factor           - multiplier of basic desired velocity
      * @param fluctuationsSize - size of fluctuations
-     * @return vector with added fluctuations
      */
-    Float64Vector addFluctuations(Float64Vector vector, double fluctuationsSize) {
-        LinkedList<Float64> fluctuations = new LinkedList<>();
-        for (int i = 0; i < vector.getDimension(); i++) {
-            fluctuations.add(Float64.valueOf((Utils.rand.nextBoolean()) ? fluctuationsSize : -fluctuationsSize));
+    void setVelocityToDesiredWithFluctuations(double factor, double fluctuationsSize) {
+        store.velocityX[id] = store.desiredVelocityX[id] * factor + ((store.nextBoolean(id)) ? fluctuationsSize : -fluctuationsSize);
+        store.velocityY[id] = store.desiredVelocityY[id] * factor + ((store.nextBoolean(id)) ? fluctuationsSize : -fluctuationsSize);
+    }
+
+    /**
+     * Updates state of agent (finds neighbors and updates state basing on them)
+     */
+    public void updateState() {
+        prepareNeighbors();
+        updateStateFromNeighbors();
+    }
+
+    /**
+     * Finds neighbors and obstacles in range of view and computes quantities of pairs with neighbors of higher ids
+     * <p/>
+     * Called for all agents before any of them is updated (updateStateFromNeighbors), so every pair of agents seeing
+     * each other is computed once
+     */
+    public void prepareNeighbors() {
+        neighbors.clear();
+        obstacles.clear();
+        if (parameters.neighborSkin > 0) {
+            neighborsExamined = findCachedNeighbors(neighbors, obstacles);
+        } else {
+            neighborsExamined = findNeighbors(-1, -1, neighbors, obstacles);
         }
-        return vector.plus(Float64Vector.valueOf(fluctuations));
+        computePairs();
+    }
 
+    /**
+     * Computes distance, normal vector and interact force of pairs with neighbors of higher ids
+     * (positions do not change while agents are updated)
+     */
+    private void computePairs() {
+        if (pairs.length < neighbors.size() * PAIR_VALUES) {
+            pairs = new double[neighbors.size() * PAIR_VALUES * 2];
+        }
+        pairBits = 32 - Integer.numberOfLeadingZeros(neighbors.size() * 2); // table at most half full
+        if (pairIds.length < (1 << pairBits)) {
+            pairIds = new int[1 << pairBits];
+            pairIndexes = new int[1 << pairBits];
+        }
+        Arrays.fill(pairIds, 0, 1 << pairBits, -1);
+        double x = getPositionX(), y = getPositionY();
+        for (int i = 0; i < neighbors.size(); i++) {
+            BaseAgent act = neighbors.get(i);
+            if (act.id > id) {
+                int slot = pairSlot(act.id);
+                while (pairIds[slot] != -1) {
+                    slot = (slot + 1) & ((1 << pairBits) - 1);
+                }
+                pairIds[slot] = act.id;
+                pairIndexes[slot] = i;
+                double actX = act.getPositionX(), actY = act.getPositionY();
+                double dist = Math.sqrt(Utils.calculateSquareDistancePoints(x, y, actX, actY));
+                pairs[i * PAIR_VALUES] = dist;
+                pairs[i * PAIR_VALUES + 1] = (x - actX) / dist;
+                pairs[i * PAIR_VALUES + 2] = (y - actY) / dist;
+                pairs[i * PAIR_VALUES + 3] = calculateInteractForce(dist);
+            }
+        }
+        pairsStamp = board.getIndexStamp();
     }
 
     /**
-     * Updates state of agent
+     * @param other - id of agent
+     * @return first slot of hash table of pairs to look for agent (Fibonacci hashing)
      */
-    public void updateState() {
-        Float64Vector oldVelocity = getVelocity().copy();
-        neighbors = new LinkedList<>();
-        obstacles = new LinkedList<>();
-        findNeighbors(-1, -1, neighbors, obstacles);
-        chooseVelocity(oldVelocity);
-        socialForces(oldVelocity);
-        velocity = oldVelocity.plus(getAcceleration().times(Constants.timePeriod));
+    private int pairSlot(int other) {
+        return (pairBits == 0) ? 0 : (other * 0x9E3779B9) >>> (32 - pairBits);
+    }
+
+    /**
+     * @param other - id of agent
+     * @return index of agent in list of neighbors, if pair with it was computed here, -1 otherwise
+     */
+    private int findPair(int other) {
+        for (int slot = pairSlot(other); ; slot = (slot + 1) & ((1 << pairBits) - 1)) {
+            if (pairIds[slot] == other) {
+                return pairIndexes[slot];
+            }
+            if (pairIds[slot] == -1) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Loads quantities of pair with neighbor to pairDistance, pairNormalX (normal vector from neighbor to this agent),
+     * pairNormalY and pairInteract
+     * <p/>
+     * Pair is computed by agent of lower id (if it sees the other one), so values are identical from both sides
+     * (normal vector is negated); otherwise it is computed here. Agent of lower id keeps indexes of its pairs
+     * in hash table by ids, so the pair is found in constant time.
+     *
+     * @param index - index of neighbor in list of neighbors
+     * @param act   - neighbor
+     */
+    void loadPair(int index, BaseAgent act) {
+        int stamp = board.getIndexStamp();
+        if (act.id > id && pairsStamp == stamp) {
+            pairDistance = pairs[index * PAIR_VALUES];
+            pairNormalX = pairs[index * PAIR_VALUES + 1];
+            pairNormalY = pairs[index * PAIR_VALUES + 2];
+            pairInteract = pairs[index * PAIR_VALUES + 3];
+            return;
+        }
+        int i = (act.id < id && act.pairsStamp == stamp) ? act.findPair(id) : -1;
+        if (i >= 0) {
+            pairDistance = act.pairs[i * PAIR_VALUES];
+            pairNormalX = -act.pairs[i * PAIR_VALUES + 1];
+            pairNormalY = -act.pairs[i * PAIR_VALUES + 2];
+            pairInteract = act.pairs[i * PAIR_VALUES + 3];
+            return;
+        }
+        double actX = act.getPositionX(), actY = act.getPositionY();
+        pairDistance = Math.sqrt(Utils.calculateSquareDistancePoints(getPositionX(), getPositionY(), actX, actY));
+        pairNormalX = (getPositionX() - actX) / pairDistance;
+        pairNormalY = (getPositionY() - actY) / pairDistance;
+        pairInteract = calculateInteractForce(pairDistance);
+    }
+
+    /**
+     * Updates state of agent basing on neighbors found by prepareNeighbors
+     */
+    public void updateStateFromNeighbors() {
+        double oldVelocityX = store.velocityX[id], oldVelocityY = store.velocityY[id];
+        chooseVelocity(oldVelocityX, oldVelocityY);
+        socialForces(oldVelocityX, oldVelocityY);
+        store.velocityX[id] = oldVelocityX + store.accelerationX[id] * Constants.timePeriod;
+        store.velocityY[id] = oldVelocityY + store.accelerationY[id] * Constants.timePeriod;
         switch (this.getType()) {
             case PASSIVE: {
-                velocity = normalizeVector(velocity, Parameters.maxVelocityPassive);
+                normalizeVelocity(parameters.maxVelocityPassive);
                 break;
             }
             case MODERATEACTIVE: {
-                velocity = normalizeVector(velocity, Parameters.maxVelocityModerate);
+                normalizeVelocity(parameters.maxVelocityModerate);
                 break;
             }
             case TROUBLEMAKER: {
-                velocity = normalizeVector(velocity, Parameters.maxVelocityTrouble);
+                normalizeVelocity(parameters.maxVelocityTrouble);
                 break;
             }
             case POLICEMAN: {
-                velocity = normalizeVector(velocity, Parameters.maxVelocityTrouble);
+                normalizeVelocity(parameters.maxVelocityTrouble);
                 break;
             }
         }
@@ -382,17 +784,24 @@ public abstract class BaseAgent extends BasicSimObject {
      * Changes position of agent to new one, only if the new one is free
      */
     public void changePosition() {
+        pairsStamp = -1; // pairs are computed for current positions
+        if (parameters.continuousPositions) {
+            changeContinuousPosition();
+            return;
+        }
         int tempX = getNewPositionX();
         int tempY = getNewPositionY();
+        moveBlocked = false;
         if (tempX != getActualPositionX() || tempY != getActualPositionY()) {
             if (board.getField(tempX, tempY) == null) {
-                board.updateField(new Pair<>(getActualPositionX(), getActualPositionY()), null);
+                board.updateField(getActualPositionX(), getActualPositionY(), null);
                 setActualPositionX(tempX);
                 setActualPositionY(tempY);
-                board.updateField(new Pair<>(getActualPositionX(), getActualPositionY()), this);
+                board.updateField(tempX, tempY, this);
                 itersWithoutMove = 0;
             } else {
                 itersWithoutMove++;
+                moveBlocked = true;
             }
         } else {
             itersWithoutMove++;
@@ -400,16 +809,49 @@ public abstract class BaseAgent extends BasicSimObject {
     }
 
     /**
-     * Normalizes vector to given maxValue
+     * Changes exact position of agent to new one, only if it is on board and out of obstacles
+     * <p/>
+     * Agents do not occupy board fields in this mode (they are kept apart by body forces), so agent's initial field
+     * is released by its first move and board holds only obstacles (and agents which have never moved)
+     */
+    private void changeContinuousPosition() {
+        double tempX = nextPositionX(), tempY = nextPositionY();
+        moveBlocked = false;
+        if (tempX == store.positionX[id] && tempY == store.positionY[id]) {
+            itersWithoutMove++;
+            return;
+        }
+        boolean onBoard = tempX >= 0 && tempY >= 0 && tempX < board.getSizeX() && tempY < board.getSizeY();
+        BasicSimObject target = onBoard ? board.getField((int) tempX, (int) tempY) : null;
+        if (!onBoard || (target != null && !target.isAgent())) {
+            itersWithoutMove++;
+            moveBlocked = true;
+            return;
+        }
+        if (board.getField(getActualPositionX(), getActualPositionY()) == this) {
+            board.updateField(getActualPositionX(), getActualPositionY(), null);
+        }
+        store.positionX[id] = tempX;
+        store.positionY[id] = tempY;
+        itersWithoutMove = 0;
+    }
+
+    /**
+     * Interaction with other agents after every agent has changed position (e.g. pushing), does nothing by default
+     */
+    public void interact() {
+    }
+
+    /**
+     * Normalizes velocity to given maxValue
      *
-     * @param vec      - input vector
-     * @param maxValue - max value of vector
-     * @return normalized vector
+     * @param maxValue - max value of velocity
      */
-    Float64Vector normalizeVector(Float64Vector vec, double maxValue) {
-        if (vec.normValue() > maxValue) {
-            return vec.times(maxValue / vec.normValue());
+    void normalizeVelocity(double maxValue) {
+        double norm = getSpeed();
+        if (norm > maxValue) {
+            store.velocityX[id] *= maxValue / norm;
+            store.velocityY[id] *= maxValue / norm;
         }
-        return vec;
     }
 }
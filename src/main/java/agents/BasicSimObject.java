@@ -4,8 +4,6 @@ package agents;
  * Representation of basic object used in simulation (base for all others - agents and obstacles)
  */
 public abstract class BasicSimObject {
-    private Integer actualPositionX;
-    private Integer actualPositionY;
 
     public boolean isAgent() {
         return agent;
@@ -16,24 +14,12 @@ public abstract class BasicSimObject {
     @Override
     public String toString() {
         return "BasicSimObject{" +
-                "X=" + actualPositionX +
-                ", Y=" + actualPositionY +
+                "X=" + getActualPositionX() +
+                ", Y=" + getActualPositionY() +
                 '}';
     }
 
-    void setActualPositionX(Integer actualPositionX) {
-        this.actualPositionX = actualPositionX;
-    }
-
-    void setActualPositionY(Integer actualPositionY) {
-        this.actualPositionY = actualPositionY;
-    }
+    public abstract int getActualPositionX();
 
-    public Integer getActualPositionX() {
-        return actualPositionX;
-    }
-
-    public Integer getActualPositionY() {
-        return actualPositionY;
-    }
+    public abstract int getActualPositionY();
 }
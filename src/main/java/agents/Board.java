@@ -1,27 +1,40 @@
 package agents;
 
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
 import org.apache.commons.math3.util.Pair;
 import simulation.Parameters;
 
-import java.util.LinkedHashSet;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 
 /**
  * Representation of board
+ * <p/>
+ * Fields are stored in tiles allocated only where they are occupied (see SparseGrid), so size of board is limited by
+ * number of objects rather than by its area
  */
 public class Board {
-    private BasicSimObject[][] elements; // board of elements
+    private SparseGrid elements; // board of elements (tiles allocated only where fields are occupied)
     private int sizeX, sizeY;  // sizes of board
     private LinkedList<Obstacle> obstacles; // list of obstacles
     private LinkedList<Pair<Pair<Integer, Integer>, Pair<Integer, Integer>>> obstaclesRect; // list of pairs of points representing rectangles filled with obstacles
-    private LinkedList<BaseAgent> agents; // list of agents
-    private LinkedList<Policeman> policemen; // list of policemen
+    private ArrayList<BaseAgent> agents; // list of agents (index of agent equals to its id)
+    private ArrayList<Policeman> policemen; // list of policemen
+    private AgentsStore agentsStore; // state of agents
+    private CellIndex cellIndex; // index of agents and obstacles used to find neighbors
+    private ForceTables forceTables; // tables of forces, null if fastMath parameter is not set
+    private NeighborLists neighborLists = new NeighborLists(); // state of cached lists of neighbors (if neighborSkin is set)
+    private int indexStamp = 0; // number of calls of updateNeighborsIndex
+    private RandomGenerator random; // random generator used while creating objects (single thread)
+    private final Parameters parameters; // parameters of simulation
 
-    public LinkedHashSet<Pair<Integer, Integer>> getAllAvailableFields() {
+    public FieldsBitmap getAllAvailableFields() {
         return allAvailableFields;
     }
 
-    private LinkedHashSet<Pair<Integer, Integer>> allAvailableFields; // list of points where new agent can be created (applicable only before simulations start)
+    private FieldsBitmap allAvailableFields; // set of points where new agent can be created (applicable only before simulations start)
 
     public LinkedList<Pair<Pair<Integer, Integer>, Pair<Integer, Integer>>> getObstaclesRect() {
         return obstaclesRect;
@@ -39,47 +52,87 @@ public class Board {
         return obstacles;
     }
 
-    public LinkedList<BaseAgent> getAgents() {
+    public ArrayList<BaseAgent> getAgents() {
         return agents;
     }
 
-    public LinkedList<Policeman> getPolicemen() {
+    public ArrayList<Policeman> getPolicemen() {
         return policemen;
     }
 
+    public AgentsStore getAgentsStore() {
+        return agentsStore;
+    }
+
+    public RandomGenerator getRandom() {
+        return random;
+    }
+
+    public Parameters getParameters() {
+        return parameters;
+    }
+
+    void setRandom(RandomGenerator random) {
+        this.random = random;
+    }
+
     /**
-     * Default constructor, doing nothing
+     * Creates board with default parameters, doing nothing else
      */
     public Board() {
+        this(new Parameters());
     }
 
     /**
-     * Initializes board
+     * Creates board, doing nothing else
+     *
+     * @param parameters - parameters of simulation
+     */
+    public Board(Parameters parameters) {
+        this.parameters = parameters;
+    }
+
+    /**
+     * Initializes board, random generators are seeded with parameters.seed
      *
      * @param length - length of board
      * @param height - height of board
      */
     public void initialize(int length, int height) {
-        elements = new BasicSimObject[length][height];
-        agents = new LinkedList<>();
+        initializeEmpty(length, height);
+        setBordersAsObstacles();
+    }
+
+    /**
+     * Initializes board without any object (even borders)
+     *
+     * @param length - length of board
+     * @param height - height of board
+     */
+    void initializeEmpty(int length, int height) {
+        elements = new SparseGrid(length, height);
+        agents = new ArrayList<>();
         obstacles = new LinkedList<>();
         obstaclesRect = new LinkedList<>();
-        policemen = new LinkedList<>();
+        policemen = new ArrayList<>();
+        random = new MersenneTwister(parameters.seed);
+        agentsStore = new AgentsStore(parameters.seed);
+        cellIndex = null;
+        neighborLists = new NeighborLists();
         sizeX = length;
         sizeY = height;
-        allAvailableFields = getAvailableFields();
-        setBordersAsObstacles();
-
+        allAvailableFields = new FieldsBitmap(length, height);
+        allAvailableFields.setRectangle(0, 0, length - 1, height - 1);
     }
 
     /**
      * Creates obstacles on borders of board
      */
     private void setBordersAsObstacles() {
-        SimulationObjectsGenerator.generateObstaclesAndUpdateBoard(this, new Pair<>(0, 0), new Pair<>(getSizeX() - 1, Parameters.agentRadius));
-        SimulationObjectsGenerator.generateObstaclesAndUpdateBoard(this, new Pair<>(0, 0), new Pair<>(Parameters.agentRadius, getSizeY() - 1));
-        SimulationObjectsGenerator.generateObstaclesAndUpdateBoard(this, new Pair<>(getSizeX() - Parameters.agentRadius - 1, 0), new Pair<>(getSizeX() - 1, getSizeY() - 1));
-        SimulationObjectsGenerator.generateObstaclesAndUpdateBoard(this, new Pair<>(0, getSizeY() - Parameters.agentRadius - 1), new Pair<>(getSizeX() - 1, getSizeY() - 1));
+        SimulationObjectsGenerator.generateObstaclesAndUpdateBoard(this, new Pair<>(0, 0), new Pair<>(getSizeX() - 1, parameters.agentRadius));
+        SimulationObjectsGenerator.generateObstaclesAndUpdateBoard(this, new Pair<>(0, 0), new Pair<>(parameters.agentRadius, getSizeY() - 1));
+        SimulationObjectsGenerator.generateObstaclesAndUpdateBoard(this, new Pair<>(getSizeX() - parameters.agentRadius - 1, 0), new Pair<>(getSizeX() - 1, getSizeY() - 1));
+        SimulationObjectsGenerator.generateObstaclesAndUpdateBoard(this, new Pair<>(0, getSizeY() - parameters.agentRadius - 1), new Pair<>(getSizeX() - 1, getSizeY() - 1));
     }
 
     /**
@@ -89,7 +142,18 @@ public class Board {
      * @param element  - element to insert
      */
     public void updateField(Pair<Integer, Integer> position, BasicSimObject element) {
-        elements[position.getFirst()][position.getSecond()] = element;
+        elements.set(position.getFirst(), position.getSecond(), element);
+    }
+
+    /**
+     * Updates field of board with given element
+     *
+     * @param x       - coordinate x
+     * @param y       - coordinate y
+     * @param element - element to insert
+     */
+    public void updateField(int x, int y, BasicSimObject element) {
+        elements.set(x, y, element);
     }
 
     /**
@@ -98,25 +162,77 @@ public class Board {
      * @return element on specified position on board
      */
     public BasicSimObject getField(int x, int y) {
-        return elements[x][y];
+        return elements.get(x, y);
     }
 
     /**
-     * Finds all empty fields on board
+     * Updates index of agents and obstacles (used by findObjectsInRange) to current positions
+     * <p/>
+     * Size of index cell equals to view range, so index is recreated when view range changes.
+     * With neighborSkin parameter set, index is updated only when any agent's cached list of neighbors is outdated,
+     * outdated lists are rebuilt then (see NeighborLists).
+     * Tables of forces (see ForceTables) depend on view range too, so they are updated here as well.
+     */
+    public void updateNeighborsIndex() {
+        indexStamp++;
+        int cellSize = (parameters.viewRange > 0) ? parameters.viewRange : 1;
+        if (cellIndex == null || cellIndex.getCellSize() != cellSize) {
+            cellIndex = new CellIndex(getSizeX(), getSizeY(), cellSize);
+        }
+        if (!parameters.fastMath) {
+            forceTables = null;
+        } else if (forceTables == null || !forceTables.matches(parameters)) {
+            forceTables = new ForceTables(parameters);
+        }
+        if (parameters.neighborSkin <= 0) {
+            cellIndex.addObstacles(obstacles);
+            cellIndex.rebuild(agents);
+        } else if (neighborLists.update(agents, obstacles.size(), parameters)) {
+            cellIndex.addObstacles(obstacles);
+            cellIndex.rebuild(agents);
+            neighborLists.rebuild(agents);
+        }
+    }
+
+    /**
+     * @return number of calls of updateNeighborsIndex, values computed with other stamp are outdated
+     */
+    int getIndexStamp() {
+        return indexStamp;
+    }
+
+    /**
+     * @param id - id of agent
+     * @return true if agent looks for neighbors directly instead of filtering its cached list (see NeighborLists)
+     */
+    boolean isNeighborSearchDirect(int id) {
+        return neighborLists.isDirect(id);
+    }
+
+    /**
+     * @return tables of forces (from the last call of updateNeighborsIndex), null if they are not used
+     */
+    ForceTables getForceTables() {
+        return forceTables;
+    }
+
+    /**
+     * Finds agents and obstacles which are closer than range to given point, basing on index
+     * (positions from the last call of updateNeighborsIndex)
      *
-     * @return set of positions of empty fields
-     */
-    LinkedHashSet<Pair<Integer, Integer>> getAvailableFields() {
-        LinkedHashSet<Pair<Integer, Integer>> availableFields = new LinkedHashSet<>(getSizeX() * getSizeY());
-        int starti = 0, startj = 0, stopi = getSizeX(), stopj = getSizeY();
-        for (int i = starti; i < stopi; i++) {
-            for (int j = startj; j < stopj; j++) {
-                if (elements[i][j] == null) {
-                    availableFields.add(new Pair<>(i, j));
-                }
-            }
+     * @param x         - coordinate x of point
+     * @param y         - coordinate y of point
+     * @param range     - range of search
+     * @param self      - agent to skip (may be null)
+     * @param neighbors - list to insert agents
+     * @param obstacles - list to insert obstacles
+     * @return number of examined agents
+     */
+    int findObjectsInRange(double x, double y, int range, BaseAgent self, List<BaseAgent> neighbors, List<Obstacle> obstacles) {
+        if (cellIndex == null) {
+            updateNeighborsIndex();
         }
-        return availableFields;
+        return cellIndex.find(x, y, range, self, neighbors, obstacles);
     }
 
     /**
@@ -126,30 +242,23 @@ public class Board {
      * @param constraintLU - left upper corner of rectangle to search for fields
      * @param constraintRD - right bottom
      * @param agents       - if true, fields in vicinity of existing objects are excluded
-     * @return set of positions of available for use fields
+     * @return set of positions of available for use fields (only those strictly inside of rectangle)
      */
-    public LinkedHashSet<Pair<Integer, Integer>> getAvailableFieldsWithConstraints(Pair<Integer, Integer> constraintLU, Pair<Integer, Integer> constraintRD, boolean agents) {
-        LinkedHashSet<Pair<Integer, Integer>> availableFields = new LinkedHashSet<>(getSizeX() + getSizeY());
-
+    public FieldsBitmap getAvailableFieldsWithConstraints(Pair<Integer, Integer> constraintLU, Pair<Integer, Integer> constraintRD, boolean agents) {
         int x1 = constraintLU.getFirst(),
                 x2 = constraintRD.getFirst(),
                 y1 = constraintLU.getSecond(),
                 y2 = constraintRD.getSecond();
 
         if (agents) {
-            x1 += Parameters.agentRadius;
-            x2 -= Parameters.agentRadius;
-            y1 += Parameters.agentRadius;
-            y2 -= Parameters.agentRadius;
+            x1 += parameters.agentRadius;
+            x2 -= parameters.agentRadius;
+            y1 += parameters.agentRadius;
+            y2 -= parameters.agentRadius;
 
             excludeObstaclesFromAvailable();
         }
-        for (Pair<Integer, Integer> temp : allAvailableFields) {
-            if (temp.getFirst() > x1 && temp.getFirst() < x2 && temp.getSecond() > y1 && temp.getSecond() < y2) {
-                availableFields.add(temp);
-            }
-        }
-        return availableFields;
+        return allAvailableFields.copyOfRectangle(x1 + 1, y1 + 1, x2 - 1, y2 - 1);
     }
 
     /**
@@ -165,35 +274,16 @@ public class Board {
 
     /**
      * Removes (see excludeObstaclesFromAvailable)
+     * <p/>
+     * Fields inside of rectangle are obstacles (or were not available before), so whole enlarged rectangle is removed
      *
      * @param obstacleRect - pair of points representing rectangle filed with obstacles
      */
     private void excludeObstacleFromAvailable(Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> obstacleRect) {
-        int x1 = obstacleRect.getFirst().getFirst(),
-                x2 = obstacleRect.getSecond().getFirst(),
-                y1 = obstacleRect.getFirst().getSecond(),
-                y2 = obstacleRect.getSecond().getSecond();
-        x1 = (x1 - Parameters.agentRadius > 0) ? x1 - Parameters.agentRadius : 0;
-        y1 = (y1 - Parameters.agentRadius > 0) ? y1 - Parameters.agentRadius : 0;
-        x2 = (x2 + Parameters.agentRadius < getSizeX()) ? x2 + Parameters.agentRadius : getSizeX() - 1;
-        y2 = (y2 + Parameters.agentRadius < getSizeY()) ? y2 + Parameters.agentRadius : getSizeY() - 1;
-
-        for (int i = x1; i <= x2; i++) {
-            for (int j = y1; j <= y1 + Parameters.agentRadius; j++) {
-                allAvailableFields.remove(new Pair<>(i, j));
-            }
-            for (int j = y2 - Parameters.agentRadius; j <= y2; j++) {
-                allAvailableFields.remove(new Pair<>(i, j));
-            }
-        }
-        for (int j = obstacleRect.getFirst().getSecond(); j <= obstacleRect.getSecond().getSecond(); j++) {
-            for (int i = x1; i <= x1 + Parameters.agentRadius; i++) {
-                allAvailableFields.remove(new Pair<>(i, j));
-            }
-            for (int i = x2 - Parameters.agentRadius; i <= x2; i++) {
-                allAvailableFields.remove(new Pair<>(i, j));
-            }
-        }
+        allAvailableFields.clearRectangle(obstacleRect.getFirst().getFirst() - parameters.agentRadius,
+                obstacleRect.getFirst().getSecond() - parameters.agentRadius,
+                obstacleRect.getSecond().getFirst() + parameters.agentRadius,
+                obstacleRect.getSecond().getSecond() + parameters.agentRadius);
     }
 
     /**
@@ -202,17 +292,19 @@ public class Board {
      * @return point representing centre of gravity
      */
     public Pair<Integer, Integer> getCenterOfGravity() {
-        int counter = 0, xsum = 0, ysum = 0;
-        for (int i = 0; i < getSizeX(); i++) {
-            for (int j = 0; j < getSizeY(); j++) {
-                if (elements[i][j] != null && elements[i][j].isAgent()) {
-                    xsum += i;
-                    ysum += j;
-                    counter++;
-                }
-            }
+        double xsum = 0, ysum = 0;
+        for (BaseAgent agent : agents) {
+            xsum += agent.getPositionX();
+            ysum += agent.getPositionY();
         }
-        return new Pair<>(xsum / counter, ysum / counter);
+        return new Pair<>((int) (xsum / agents.size()), (int) (ysum / agents.size()));
+    }
+
+    /**
+     * @return approximate memory used by fields of board and set of available fields, in bytes
+     */
+    public long getFieldsMemory() {
+        return elements.getAllocatedTiles() * SparseGrid.TILE_BYTES + allAvailableFields.allocatedTiles() * FieldsBitmap.TILE_BYTES;
     }
 }
 
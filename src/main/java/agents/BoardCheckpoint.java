@@ -0,0 +1,269 @@
+package agents;
+
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.util.Pair;
+import simulation.Parameters;
+
+import java.io.*;
+import java.util.List;
+
+/**
+ * Binary checkpoint of whole simulation state - parameters, board (obstacles, available fields), agents
+ * (with their stores' values and random streams), random generator of board and number of iteration
+ * <p/>
+ * Restored simulation continues exactly as the saved one would (with the same number of threads or not, see AgentsStore).
+ * Neighbors of policemen are saved too - they are found in previous iteration and used to propagate forces in police
+ * cordon before neighbors are found again (see PoliceForcePropagation).
+ */
+public class BoardCheckpoint {
+    private static final int MAGIC = 0x43444350; // "CDCP"
+    private static final int VERSION = 6;
+
+    private final long iteration; // number of iteration
+    private final boolean started; // if simulation was started (objects cannot be added)
+
+    /**
+     * @param iteration - number of iteration
+     * @param started   - if simulation was started
+     */
+    public BoardCheckpoint(long iteration, boolean started) {
+        this.iteration = iteration;
+        this.started = started;
+    }
+
+    public long getIteration() {
+        return iteration;
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Saves state of board and parameters to file
+     *
+     * @param board - simulation board
+     * @param file  - output file
+     * @throws IOException if file cannot be written
+     */
+    public void save(Board board, File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(iteration);
+            out.writeBoolean(started);
+            saveParameters(out, board.getParameters());
+
+            out.writeInt(board.getSizeX());
+            out.writeInt(board.getSizeY());
+            out.writeInt(board.getObstaclesRect().size());
+            for (Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> rect : board.getObstaclesRect()) {
+                out.writeInt(rect.getFirst().getFirst());
+                out.writeInt(rect.getFirst().getSecond());
+                out.writeInt(rect.getSecond().getFirst());
+                out.writeInt(rect.getSecond().getSecond());
+            }
+            board.getAllAvailableFields().write(out);
+            byte[] random = serialize(board.getRandom());
+            out.writeInt(random.length);
+            out.write(random);
+
+            List<BaseAgent> agents = board.getAgents();
+            AgentsStore store = board.getAgentsStore();
+            out.writeInt(agents.size());
+            for (BaseAgent agent : agents) {
+                int id = agent.id;
+                out.writeByte(agent.getType().ordinal());
+                out.writeByte(agent.getState().ordinal());
+                out.writeInt(agent.itersWithoutMove);
+                out.writeDouble(store.positionX[id]);
+                out.writeDouble(store.positionY[id]);
+                out.writeDouble(store.velocityX[id]);
+                out.writeDouble(store.velocityY[id]);
+                out.writeDouble(store.desiredVelocityX[id]);
+                out.writeDouble(store.desiredVelocityY[id]);
+                out.writeDouble(store.accelerationX[id]);
+                out.writeDouble(store.accelerationY[id]);
+                out.writeDouble(store.forceX[id]);
+                out.writeDouble(store.forceY[id]);
+                out.writeDouble(store.pushedX[id]);
+                out.writeDouble(store.pushedY[id]);
+                out.writeDouble(store.pushToApplyX[id]);
+                out.writeDouble(store.pushToApplyY[id]);
+                out.writeDouble(store.mass[id]);
+                out.writeLong(store.randomState[id]);
+                if (agent instanceof Policeman) {
+                    Policeman pol = (Policeman) agent;
+                    out.writeInt(pol.getDesiredPoint().getFirst());
+                    out.writeInt(pol.getDesiredPoint().getSecond());
+                    out.writeDouble(pol.getMaxReactionForce());
+                    out.writeInt(pol.getWasPushedItersAgo());
+                }
+            }
+            for (Policeman pol : board.getPolicemen()) {
+                out.writeInt(pol.neighbors.size());
+                for (BaseAgent neighbor : pol.neighbors) {
+                    out.writeInt(neighbor.id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Restores state of board and parameters from file (board is initialized again)
+     *
+     * @param board - simulation board
+     * @param file  - checkpoint file
+     * @return checkpoint (number of iteration and if simulation was started)
+     * @throws IOException if file cannot be read or is not a checkpoint
+     */
+    public static BoardCheckpoint restore(Board board, File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a checkpoint: " + file);
+            }
+            BoardCheckpoint checkpoint = new BoardCheckpoint(in.readLong(), in.readBoolean());
+            restoreParameters(in, board.getParameters());
+
+            board.initializeEmpty(in.readInt(), in.readInt());
+            int rects = in.readInt();
+            for (int i = 0; i < rects; i++) {
+                Pair<Integer, Integer> lu = new Pair<>(in.readInt(), in.readInt());
+                Pair<Integer, Integer> rd = new Pair<>(in.readInt(), in.readInt());
+                SimulationObjectsGenerator.generateObstaclesAndUpdateBoard(board, lu, rd);
+            }
+            board.getAllAvailableFields().read(in);
+            byte[] random = new byte[in.readInt()];
+            in.readFully(random);
+
+            AgentsStore store = board.getAgentsStore();
+            int count = in.readInt();
+            AgentsTypes[] types = AgentsTypes.values();
+            AgentsStates[] states = AgentsStates.values();
+            for (int i = 0; i < count; i++) {
+                AgentsTypes type = types[in.readByte()];
+                AgentsStates state = states[in.readByte()];
+                int itersWithoutMove = in.readInt();
+                double[] values = new double[15];
+                for (int j = 0; j < values.length; j++) {
+                    values[j] = in.readDouble();
+                }
+                long randomState = in.readLong();
+                BaseAgent agent;
+                switch (type) {
+                    case PASSIVE:
+                        agent = new PassiveParticipant((int) values[0], (int) values[1], board);
+                        break;
+                    case MODERATEACTIVE:
+                        agent = new ModerateParticipant((int) values[0], (int) values[1], board);
+                        break;
+                    case TROUBLEMAKER:
+                        agent = new TroubleMaker((int) values[0], (int) values[1], board);
+                        break;
+                    default:
+                        Policeman pol = new Policeman(in.readInt(), in.readInt(), board); // created in position to hold
+                        pol.restore(in.readDouble(), in.readInt());
+                        board.getPolicemen().add(pol);
+                        agent = pol;
+                        break;
+                }
+                int id = agent.id;
+                agent.state = state;
+                agent.itersWithoutMove = itersWithoutMove;
+                store.positionX[id] = values[0];
+                store.positionY[id] = values[1];
+                store.velocityX[id] = values[2];
+                store.velocityY[id] = values[3];
+                store.desiredVelocityX[id] = values[4];
+                store.desiredVelocityY[id] = values[5];
+                store.accelerationX[id] = values[6];
+                store.accelerationY[id] = values[7];
+                store.forceX[id] = values[8];
+                store.forceY[id] = values[9];
+                store.pushedX[id] = values[10];
+                store.pushedY[id] = values[11];
+                store.pushToApplyX[id] = values[12];
+                store.pushToApplyY[id] = values[13];
+                store.mass[id] = values[14];
+                store.randomState[id] = randomState;
+                if (!board.getParameters().continuousPositions) { // agents do not occupy fields in continuous mode
+                    board.updateField(agent.getActualPositionX(), agent.getActualPositionY(), agent);
+                }
+                board.getAgents().add(agent);
+            }
+            for (Policeman pol : board.getPolicemen()) { // after agents, neighbors may have higher ids
+                int neighbors = in.readInt();
+                for (int i = 0; i < neighbors; i++) {
+                    pol.neighbors.add(board.getAgents().get(in.readInt()));
+                }
+            }
+            board.setRandom((RandomGenerator) deserialize(random)); // after agents, their constructors use generator
+            return checkpoint;
+        }
+    }
+
+    private static void saveParameters(DataOutputStream out, Parameters parameters) throws IOException {
+        out.writeInt(parameters.agentRadius);
+        out.writeInt(parameters.agentRadiusGUI);
+        out.writeInt(parameters.crowdSparsity);
+        out.writeInt(parameters.partOfModerate);
+        out.writeInt(parameters.partOfTroubleMakers);
+        out.writeLong(parameters.seed);
+        out.writeInt(parameters.fps);
+        out.writeDouble(parameters.maxVelocityPassive);
+        out.writeDouble(parameters.maxVelocityModerate);
+        out.writeDouble(parameters.maxVelocityTrouble);
+        out.writeInt(parameters.viewRange);
+        out.writeBoolean(parameters.fastMath);
+        out.writeDouble(parameters.fastMathError);
+        out.writeBoolean(parameters.continuousPositions);
+        out.writeInt(parameters.neighborSkin);
+        out.writeInt(parameters.desiredPoint.getFirst());
+        out.writeInt(parameters.desiredPoint.getSecond());
+    }
+
+    private static void restoreParameters(DataInputStream in, Parameters parameters) throws IOException {
+        parameters.agentRadius = in.readInt();
+        parameters.agentRadiusGUI = in.readInt();
+        parameters.crowdSparsity = in.readInt();
+        parameters.partOfModerate = in.readInt();
+        parameters.partOfTroubleMakers = in.readInt();
+        parameters.seed = in.readLong();
+        parameters.fps = in.readInt();
+        parameters.maxVelocityPassive = in.readDouble();
+        parameters.maxVelocityModerate = in.readDouble();
+        parameters.maxVelocityTrouble = in.readDouble();
+        parameters.viewRange = in.readInt();
+        parameters.fastMath = in.readBoolean();
+        parameters.fastMathError = in.readDouble();
+        parameters.continuousPositions = in.readBoolean();
+        parameters.neighborSkin = in.readInt();
+        parameters.desiredPoint = new Pair<>(in.readInt(), in.readInt());
+    }
+
+    /**
+     * @param object - serializable object (random generator)
+     * @return serialized object
+     * @throws IOException if object cannot be serialized
+     */
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param bytes - serialized object
+     * @return deserialized object
+     * @throws IOException if object cannot be deserialized
+     */
+    private static Object deserialize(byte[] bytes) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+}
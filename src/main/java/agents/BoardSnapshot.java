@@ -0,0 +1,160 @@
+package agents;
+
+import org.apache.commons.math3.util.Pair;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Copy of board's state needed to draw it - positions and types of agents, colours of types and obstacles' rectangles
+ * <p/>
+ * Snapshot is filled by simulation thread and read by GUI thread, never both at once (see controller.SnapshotExchange).
+ * Arrays are reused by subsequent captures, so only valid entries (up to count) are meaningful.
+ */
+public class BoardSnapshot {
+    private long iteration; // number of iteration
+    private int agentsCount; // number of agents
+    private int[] positionX = new int[0]; // positions of agents
+    private int[] positionY = new int[0];
+    private byte[] type = new byte[0]; // types of agents (ordinal of AgentsTypes)
+    private final int[] typeColour = new int[AgentsTypes.values().length]; // colours of types (RGB)
+    private int agentRadius; // radius of agents
+    private int obstaclesCount; // number of obstacles' rectangles
+    private int[] obstacles = new int[0]; // rectangles of obstacles, 4 values per rectangle (x1, y1, x2, y2)
+
+    /**
+     * Copies state of board
+     *
+     * @param board     - simulation board
+     * @param iteration - number of iteration
+     */
+    public void capture(Board board, long iteration) {
+        AgentsStore store = board.getAgentsStore();
+        List<BaseAgent> agents = board.getAgents();
+        reset(iteration, agents.size(), board.getParameters().agentRadius);
+        for (int i = 0; i < agentsCount; i++) {
+            BaseAgent agent = agents.get(i);
+            positionX[i] = (int) store.positionX[agent.id];
+            positionY[i] = (int) store.positionY[agent.id];
+            int agentType = agent.getType().ordinal();
+            type[i] = (byte) agentType;
+            typeColour[agentType] = agent.getColour().getRGB();
+        }
+
+        setObstaclesCount(board.getObstaclesRect().size());
+        int i = 0;
+        for (Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> rect : board.getObstaclesRect()) {
+            obstacles[i++] = rect.getFirst().getFirst();
+            obstacles[i++] = rect.getFirst().getSecond();
+            obstacles[i++] = rect.getSecond().getFirst();
+            obstacles[i++] = rect.getSecond().getSecond();
+        }
+    }
+
+    /**
+     * Starts filling snapshot from other source than board (e.g. recording), see setAgent, setTypeColour, setObstacle
+     *
+     * @param iteration   - number of iteration
+     * @param agentsCount - number of agents
+     * @param agentRadius - radius of agents
+     */
+    public void reset(long iteration, int agentsCount, int agentRadius) {
+        this.iteration = iteration;
+        this.agentsCount = agentsCount;
+        this.agentRadius = agentRadius;
+        if (positionX.length < agentsCount) {
+            int capacity = agentsCount + agentsCount / 2;
+            positionX = new int[capacity];
+            positionY = new int[capacity];
+            type = new byte[capacity];
+        }
+    }
+
+    /**
+     * @param i         - index of agent
+     * @param x         - position x
+     * @param y         - position y
+     * @param agentType - ordinal of AgentsTypes
+     */
+    public void setAgent(int i, int x, int y, int agentType) {
+        positionX[i] = x;
+        positionY[i] = y;
+        type[i] = (byte) agentType;
+    }
+
+    /**
+     * @param agentType - ordinal of AgentsTypes
+     * @param rgb       - colour of agents of given type
+     */
+    public void setTypeColour(int agentType, int rgb) {
+        typeColour[agentType] = rgb;
+    }
+
+    /**
+     * @param count - number of obstacles' rectangles
+     */
+    public void setObstaclesCount(int count) {
+        obstaclesCount = count;
+        if (obstacles.length < 4 * obstaclesCount) {
+            obstacles = Arrays.copyOf(obstacles, 8 * obstaclesCount);
+        }
+    }
+
+    /**
+     * @param i          - index of obstacle's rectangle
+     * @param value      - 0 for x1, 1 for y1, 2 for x2, 3 for y2
+     * @param coordinate - coordinate of rectangle
+     */
+    public void setObstacle(int i, int value, int coordinate) {
+        obstacles[4 * i + value] = coordinate;
+    }
+
+    public long getIteration() {
+        return iteration;
+    }
+
+    public int getAgentsCount() {
+        return agentsCount;
+    }
+
+    public int getPositionX(int i) {
+        return positionX[i];
+    }
+
+    public int getPositionY(int i) {
+        return positionY[i];
+    }
+
+    /**
+     * @param i - index of agent
+     * @return type of agent (ordinal of AgentsTypes)
+     */
+    public int getType(int i) {
+        return type[i];
+    }
+
+    /**
+     * @param type - ordinal of AgentsTypes
+     * @return colour of agents of given type (RGB)
+     */
+    public int getTypeColour(int type) {
+        return typeColour[type];
+    }
+
+    public int getAgentRadius() {
+        return agentRadius;
+    }
+
+    public int getObstaclesCount() {
+        return obstaclesCount;
+    }
+
+    /**
+     * @param i     - index of obstacle's rectangle
+     * @param value - 0 for x1, 1 for y1, 2 for x2, 3 for y2
+     * @return coordinate of rectangle
+     */
+    public int getObstacle(int i, int value) {
+        return obstacles[4 * i + value];
+    }
+}
@@ -0,0 +1,213 @@
+package agents;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Uniform grid (cell list) of agents and obstacles, used to find objects in range of view
+ * <p/>
+ * Board is divided into square cells of given size; agents are sorted by cells (with copies of their positions, so
+ * search reads consecutive memory) and every cell holds list of obstacles (rectangles) intersecting with it,
+ * so search visits only cells which intersect with range of view.
+ * Starts of cells cover only bounding box of agents and lists of obstacles are allocated in blocks of cells
+ * intersecting with obstacles, so memory of index does not grow with area of board.
+ */
+class CellIndex {
+    private static final int BLOCK = 16; // size of block of obstacles' cells (side of square, in cells)
+
+    private final int cellSize; // size of cell (side of square)
+    private final int cellsX, cellsY; // number of cells in each dimension
+
+    private int boxX, boxY, boxSizeX, boxSizeY; // bounding box of agents' cells (first cell and size)
+    private int[] cellStart = new int[1]; // index (in items) of first agent of cell of bounding box, cellStart[cells] = number of agents
+    private BaseAgent[] items = new BaseAgent[0]; // indexed agents, sorted by cells (in descending order of ids within cell)
+    private double[] itemsX = new double[0], itemsY = new double[0]; // positions of indexed agents
+    private int[] itemCells = new int[0]; // cells of agents (in order of agents list), used while sorting
+    private final int blocksY; // number of blocks of obstacles' cells in dimension y
+    private final List<List<ArrayList<Obstacle>>> obstacleBlocks; // obstacles in cells, by blocks (null if no obstacle in block or cell)
+    private int obstaclesCount = 0; // number of indexed obstacles
+
+    /**
+     * Creates empty index
+     *
+     * @param sizeX    - size of board x
+     * @param sizeY    - size of board y
+     * @param cellSize - size of cell
+     */
+    CellIndex(int sizeX, int sizeY, int cellSize) {
+        this.cellSize = (cellSize > 0) ? cellSize : 1;
+        cellsX = sizeX / this.cellSize + 1;
+        cellsY = sizeY / this.cellSize + 1;
+        blocksY = (cellsY + BLOCK - 1) / BLOCK;
+        obstacleBlocks = new ArrayList<>(Collections.<List<ArrayList<Obstacle>>>nCopies(((cellsX + BLOCK - 1) / BLOCK) * blocksY, null));
+    }
+
+    int getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * @param coordinate - coordinate on board
+     * @param cells      - number of cells in this dimension
+     * @return number of cell which contains given coordinate (clamped to board)
+     */
+    private int cellOf(int coordinate, int cells) {
+        int cell = coordinate / cellSize;
+        if (coordinate < 0) {
+            return 0;
+        }
+        return (cell < cells) ? cell : cells - 1;
+    }
+
+    /**
+     * @param coordinate - exact coordinate on board
+     * @param cells      - number of cells in this dimension
+     * @return number of cell which contains given coordinate (clamped to board)
+     */
+    private int cellOf(double coordinate, int cells) {
+        if (coordinate < 0) {
+            return 0;
+        }
+        double cell = coordinate / cellSize;
+        return (cell < cells) ? (int) cell : cells - 1;
+    }
+
+    /**
+     * Inserts all agents into index, previous content (agents only) is discarded
+     *
+     * @param agents - agents to index
+     */
+    void rebuild(List<BaseAgent> agents) {
+        int count = agents.size();
+        if (items.length < count) {
+            items = new BaseAgent[count * 2];
+            itemsX = new double[count * 2];
+            itemsY = new double[count * 2];
+            itemCells = new int[count * 2];
+        }
+        int minX = cellsX, minY = cellsY, maxX = -1, maxY = -1;
+        for (int i = 0; i < count; i++) {
+            BaseAgent agent = agents.get(i);
+            int x = cellOf(agent.getPositionX(), cellsX), y = cellOf(agent.getPositionY(), cellsY);
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+        boxX = minX;
+        boxY = minY;
+        boxSizeX = Math.max(maxX - minX + 1, 0);
+        boxSizeY = Math.max(maxY - minY + 1, 0);
+        int cells = boxSizeX * boxSizeY;
+        if (cellStart.length < cells + 1) {
+            cellStart = new int[cells * 2 + 1];
+        }
+        Arrays.fill(cellStart, 0, cells + 1, 0);
+        for (int i = 0; i < count; i++) {
+            BaseAgent agent = agents.get(i);
+            int cell = (cellOf(agent.getPositionX(), cellsX) - boxX) * boxSizeY + cellOf(agent.getPositionY(), cellsY) - boxY;
+            itemCells[i] = cell;
+            cellStart[cell]++;
+        }
+        for (int i = 1; i < cells; i++) {
+            cellStart[i] += cellStart[i - 1]; // end of cell
+        }
+        cellStart[cells] = count;
+        for (int i = 0; i < count; i++) { // filling cells from ends, so ids are in descending order and cellStart becomes start of cell
+            int index = --cellStart[itemCells[i]];
+            BaseAgent agent = agents.get(i);
+            items[index] = agent;
+            itemsX[index] = agent.getPositionX();
+            itemsY[index] = agent.getPositionY();
+        }
+        Arrays.fill(items, count, items.length, null);
+    }
+
+    /**
+     * @param i - cell x
+     * @param j - cell y
+     * @return obstacles in cell, null if none
+     */
+    private ArrayList<Obstacle> obstaclesOf(int i, int j) {
+        List<ArrayList<Obstacle>> block = obstacleBlocks.get((i / BLOCK) * blocksY + j / BLOCK);
+        return (block != null) ? block.get((i % BLOCK) * BLOCK + j % BLOCK) : null;
+    }
+
+    /**
+     * Inserts obstacles which are not indexed yet (obstacles are static, they are never removed)
+     *
+     * @param obstacles - all obstacles on board, in order of creation
+     */
+    void addObstacles(List<Obstacle> obstacles) {
+        if (obstacles.size() == obstaclesCount) {
+            return;
+        }
+        for (Obstacle obstacle : obstacles.subList(obstaclesCount, obstacles.size())) {
+            int stopX = cellOf(obstacle.getRight(), cellsX), stopY = cellOf(obstacle.getDown(), cellsY);
+            for (int i = cellOf(obstacle.getLeft(), cellsX); i <= stopX; i++) {
+                for (int j = cellOf(obstacle.getUp(), cellsY); j <= stopY; j++) {
+                    int blockIndex = (i / BLOCK) * blocksY + j / BLOCK, cell = (i % BLOCK) * BLOCK + j % BLOCK;
+                    List<ArrayList<Obstacle>> block = obstacleBlocks.get(blockIndex);
+                    if (block == null) {
+                        block = new ArrayList<>(Collections.<ArrayList<Obstacle>>nCopies(BLOCK * BLOCK, null));
+                        obstacleBlocks.set(blockIndex, block);
+                    }
+                    if (block.get(cell) == null) {
+                        block.set(cell, new ArrayList<Obstacle>());
+                    }
+                    block.get(cell).add(obstacle);
+                }
+            }
+        }
+        obstaclesCount = obstacles.size();
+    }
+
+    /**
+     * Finds agents and obstacles which are closer than range to given point
+     * <p/>
+     * Obstacle is reported once, by the first visited cell it intersects with
+     *
+     * @param x         - coordinate x of point
+     * @param y         - coordinate y of point
+     * @param range     - range of search
+     * @param self      - agent to skip (may be null)
+     * @param neighbors - list to insert agents
+     * @param obstacles - list to insert obstacles
+     * @return number of examined agents (in visited cells)
+     */
+    int find(double x, double y, int range, BaseAgent self, List<BaseAgent> neighbors, List<Obstacle> obstacles) {
+        int squareRange = range * range;
+        int examined = 0;
+        int startX = cellOf(x - range, cellsX), stopX = cellOf(x + range, cellsX);
+        int startY = cellOf(y - range, cellsY), stopY = cellOf(y + range, cellsY);
+        for (int i = startX; i <= stopX; i++) {
+            for (int j = startY; j <= stopY; j++) {
+                int boxI = i - boxX, boxJ = j - boxY;
+                if (boxI >= 0 && boxI < boxSizeX && boxJ >= 0 && boxJ < boxSizeY) {
+                    int cell = boxI * boxSizeY + boxJ, stop = cellStart[cell + 1];
+                    examined += stop - cellStart[cell];
+                    for (int index = cellStart[cell]; index < stop; index++) {
+                        double dx = x - itemsX[index], dy = y - itemsY[index];
+                        if (dx * dx + dy * dy < squareRange && items[index] != self) {
+                            neighbors.add(items[index]);
+                        }
+                    }
+                }
+                ArrayList<Obstacle> cellObstacles = obstaclesOf(i, j);
+                if (cellObstacles != null) {
+                    for (int k = 0; k < cellObstacles.size(); k++) {
+                        Obstacle obstacle = cellObstacles.get(k);
+                        boolean firstCell = i == Math.max(startX, cellOf(obstacle.getLeft(), cellsX))
+                                && j == Math.max(startY, cellOf(obstacle.getUp(), cellsY));
+                        if (firstCell && obstacle.squareDistanceTo(x, y) < squareRange) {
+                            obstacles.add(obstacle);
+                        }
+                    }
+                }
+            }
+        }
+        return examined;
+    }
+}
@@ -0,0 +1,332 @@
+package agents;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compact set of board fields - one bit per field, stored in tiles of 64 x 64 fields
+ * <p/>
+ * Tile is array of 64 words, one per column of tile (bit i of word is field in row i of tile). Tiles which are
+ * empty or full are not allocated (null and shared FULL array), so memory scales with length of borders of set
+ * rather than with area of board, and rectangle operations take constant time per tile covered by rectangle.
+ * Shared FULL array is never modified - tile is copied before partial change.
+ */
+public class FieldsBitmap {
+    private static final int TILE_SHIFT = 6; // log2 of size of tile
+    private static final int TILE_SIZE = 1 << TILE_SHIFT; // size of tile (number of columns and rows)
+    private static final long[] FULL = filledTile(); // tile with every field set
+    static final long TILE_BYTES = 16 + 8L * TILE_SIZE; // approximate memory of allocated tile
+
+    private final int sizeX, sizeY; // size of board
+    private final int tilesX, tilesY; // number of tiles in each dimension
+    private final long[][] tiles; // tiles column by column, null if tile is empty
+
+    /**
+     * Creates empty set
+     *
+     * @param sizeX - size of board x
+     * @param sizeY - size of board y
+     */
+    public FieldsBitmap(int sizeX, int sizeY) {
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        tilesX = (sizeX + TILE_SIZE - 1) >>> TILE_SHIFT;
+        tilesY = (sizeY + TILE_SIZE - 1) >>> TILE_SHIFT;
+        tiles = new long[tilesX * tilesY][];
+    }
+
+    private static long[] filledTile() {
+        long[] tile = new long[TILE_SIZE];
+        Arrays.fill(tile, -1L);
+        return tile;
+    }
+
+    /**
+     * @param x - coordinate x
+     * @param y - coordinate y
+     * @return true if field belongs to set (fields outside of board never belong)
+     */
+    public boolean isSet(int x, int y) {
+        if (x < 0 || y < 0 || x >= sizeX || y >= sizeY) {
+            return false;
+        }
+        long[] tile = tiles[(x >>> TILE_SHIFT) * tilesY + (y >>> TILE_SHIFT)];
+        return tile != null && (tile[x & (TILE_SIZE - 1)] & (1L << y)) != 0;
+    }
+
+    /**
+     * Removes field from set
+     *
+     * @param x - coordinate x
+     * @param y - coordinate y
+     */
+    public void clear(int x, int y) {
+        update(x, y, x, y, false);
+    }
+
+    /**
+     * Adds or removes all fields of rectangle (clipped to board)
+     *
+     * @param x1    - left side
+     * @param y1    - upper side
+     * @param x2    - right side (inclusive)
+     * @param y2    - bottom side (inclusive)
+     * @param value - true to add, false to remove
+     */
+    private void update(int x1, int y1, int x2, int y2, boolean value) {
+        x1 = Math.max(x1, 0);
+        y1 = Math.max(y1, 0);
+        x2 = Math.min(x2, sizeX - 1);
+        y2 = Math.min(y2, sizeY - 1);
+        if (x1 > x2 || y1 > y2) {
+            return;
+        }
+        long[] uniform = value ? FULL : null;
+        for (int tx = x1 >>> TILE_SHIFT; tx <= x2 >>> TILE_SHIFT; tx++) {
+            int left = Math.max(x1, tx << TILE_SHIFT), right = Math.min(x2, (tx << TILE_SHIFT) + TILE_SIZE - 1);
+            for (int ty = y1 >>> TILE_SHIFT; ty <= y2 >>> TILE_SHIFT; ty++) {
+                int index = tx * tilesY + ty;
+                long[] tile = tiles[index];
+                if (tile == uniform) {
+                    continue;
+                }
+                int up = Math.max(y1, ty << TILE_SHIFT), down = Math.min(y2, (ty << TILE_SHIFT) + TILE_SIZE - 1);
+                if (coversTile(tx, ty, left, up, right, down)) {
+                    tiles[index] = uniform;
+                    continue;
+                }
+                tile = (tile == null) ? new long[TILE_SIZE] : (tile == FULL) ? FULL.clone() : tile;
+                long mask = rowsMask(up, down);
+                for (int i = left & (TILE_SIZE - 1); i <= (right & (TILE_SIZE - 1)); i++) {
+                    tile[i] = value ? tile[i] | mask : tile[i] & ~mask;
+                }
+                tiles[index] = normalized(tile);
+            }
+        }
+    }
+
+    /**
+     * @return true if given rectangle (inside of tile) contains every field of tile which is on board
+     */
+    private boolean coversTile(int tx, int ty, int left, int up, int right, int down) {
+        return left == tx << TILE_SHIFT && up == ty << TILE_SHIFT
+                && right == Math.min(sizeX - 1, (tx << TILE_SHIFT) + TILE_SIZE - 1)
+                && down == Math.min(sizeY - 1, (ty << TILE_SHIFT) + TILE_SIZE - 1);
+    }
+
+    /**
+     * @param up   - first row (inclusive, any row of tile)
+     * @param down - last row (inclusive, any row of the same tile)
+     * @return word with bits of rows of tile from up to down
+     */
+    private static long rowsMask(int up, int down) {
+        return (-1L << up) & (-1L >>> (63 - (down & 63)));
+    }
+
+    /**
+     * @param tile - allocated tile
+     * @return null if tile is empty, FULL if it is full, tile otherwise
+     */
+    private static long[] normalized(long[] tile) {
+        long and = -1L, or = 0;
+        for (long word : tile) {
+            and &= word;
+            or |= word;
+        }
+        return (or == 0) ? null : (and == -1L) ? FULL : tile;
+    }
+
+    /**
+     * Adds all fields of rectangle (clipped to board)
+     *
+     * @param x1 - left side
+     * @param y1 - upper side
+     * @param x2 - right side (inclusive)
+     * @param y2 - bottom side (inclusive)
+     */
+    public void setRectangle(int x1, int y1, int x2, int y2) {
+        update(x1, y1, x2, y2, true);
+    }
+
+    /**
+     * Removes all fields of rectangle (clipped to board)
+     *
+     * @param x1 - left side
+     * @param y1 - upper side
+     * @param x2 - right side (inclusive)
+     * @param y2 - bottom side (inclusive)
+     */
+    public void clearRectangle(int x1, int y1, int x2, int y2) {
+        update(x1, y1, x2, y2, false);
+    }
+
+    /**
+     * Removes fields in circle with middle in point (x,y) and radius r
+     *
+     * @param x - coordinate x of point
+     * @param y - coordinate y of point
+     * @param r - radius
+     */
+    public void clearCircle(int x, int y, int r) {
+        for (int i = x - r; i <= x + r; i++) {
+            int halfHeight = (int) Math.sqrt(r * r - (x - i) * (x - i));
+            update(i, y - halfHeight, i, y + halfHeight, false);
+        }
+    }
+
+    /**
+     * Creates set containing only those fields of this set, which are inside of rectangle
+     *
+     * @param x1 - left side
+     * @param y1 - upper side
+     * @param x2 - right side (inclusive)
+     * @param y2 - bottom side (inclusive)
+     * @return new set
+     */
+    public FieldsBitmap copyOfRectangle(int x1, int y1, int x2, int y2) {
+        FieldsBitmap copy = new FieldsBitmap(sizeX, sizeY);
+        x1 = Math.max(x1, 0);
+        y1 = Math.max(y1, 0);
+        x2 = Math.min(x2, sizeX - 1);
+        y2 = Math.min(y2, sizeY - 1);
+        if (x1 > x2 || y1 > y2) {
+            return copy;
+        }
+        for (int tx = x1 >>> TILE_SHIFT; tx <= x2 >>> TILE_SHIFT; tx++) {
+            int left = Math.max(x1, tx << TILE_SHIFT), right = Math.min(x2, (tx << TILE_SHIFT) + TILE_SIZE - 1);
+            for (int ty = y1 >>> TILE_SHIFT; ty <= y2 >>> TILE_SHIFT; ty++) {
+                int index = tx * tilesY + ty;
+                long[] tile = tiles[index];
+                if (tile == null) {
+                    continue;
+                }
+                int up = Math.max(y1, ty << TILE_SHIFT), down = Math.min(y2, (ty << TILE_SHIFT) + TILE_SIZE - 1);
+                if (coversTile(tx, ty, left, up, right, down)) {
+                    copy.tiles[index] = (tile == FULL) ? FULL : tile.clone();
+                    continue;
+                }
+                long[] copied = new long[TILE_SIZE];
+                long mask = rowsMask(up, down);
+                for (int i = left & (TILE_SIZE - 1); i <= (right & (TILE_SIZE - 1)); i++) {
+                    copied[i] = tile[i] & mask;
+                }
+                copy.tiles[index] = normalized(copied);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Finds first field of set in column, starting from given y
+     *
+     * @param x    - column
+     * @param from - first y to check
+     * @return y of found field or -1 if there is no such field
+     */
+    public int nextSetInColumn(int x, int from) {
+        if (x < 0 || x >= sizeX || from >= sizeY) {
+            return -1;
+        }
+        from = Math.max(from, 0);
+        int base = (x >>> TILE_SHIFT) * tilesY, column = x & (TILE_SIZE - 1);
+        for (int ty = from >>> TILE_SHIFT; ty < tilesY; ty++) {
+            long[] tile = tiles[base + ty];
+            if (tile == null) {
+                continue;
+            }
+            long word = tile[column];
+            if (ty == from >>> TILE_SHIFT) {
+                word &= -1L << from;
+            }
+            if (word != 0) {
+                int y = (ty << TILE_SHIFT) + Long.numberOfTrailingZeros(word);
+                return (y < sizeY) ? y : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return number of allocated tiles (neither empty nor full)
+     */
+    public int allocatedTiles() {
+        int count = 0;
+        for (long[] tile : tiles) {
+            if (tile != null && tile != FULL) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return number of fields in set
+     */
+    public int cardinality() {
+        int count = 0;
+        for (int tx = 0; tx < tilesX; tx++) {
+            int columns = Math.min(TILE_SIZE, sizeX - (tx << TILE_SHIFT));
+            for (int ty = 0; ty < tilesY; ty++) {
+                long[] tile = tiles[tx * tilesY + ty];
+                if (tile == null) {
+                    continue;
+                }
+                long mask = rowsMask(0, Math.min(TILE_SIZE, sizeY - (ty << TILE_SHIFT)) - 1);
+                for (int i = 0; i < columns; i++) {
+                    count += Long.bitCount(tile[i] & mask);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes set (tile by tile: 0 - empty, 1 - full, 2 - followed by words of tile)
+     *
+     * @param out - output
+     * @throws IOException if set cannot be written
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(tiles.length);
+        for (long[] tile : tiles) {
+            out.writeByte((tile == null) ? 0 : (tile == FULL) ? 1 : 2);
+            if (tile != null && tile != FULL) {
+                for (long word : tile) {
+                    out.writeLong(word);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads set written by write (replaces content of this set)
+     *
+     * @param in - input
+     * @throws IOException if set cannot be read or has different size
+     */
+    void read(DataInput in) throws IOException {
+        if (in.readInt() != tiles.length) {
+            throw new IOException("Wrong number of tiles of fields set");
+        }
+        for (int i = 0; i < tiles.length; i++) {
+            switch (in.readByte()) {
+                case 0:
+                    tiles[i] = null;
+                    break;
+                case 1:
+                    tiles[i] = FULL;
+                    break;
+                case 2:
+                    tiles[i] = new long[TILE_SIZE];
+                    for (int j = 0; j < TILE_SIZE; j++) {
+                        tiles[i][j] = in.readLong();
+                    }
+                    break;
+                default:
+                    throw new IOException("Wrong tile of fields set");
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package agents;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.util.Arrays;
+
+/**
+ * Set of fields in rectangular area, supporting uniform random choice and removal in constant time
+ * <p/>
+ * Fields are kept in dense array (free-list), every field knows its position in that array,
+ * so removed field is replaced by the last one
+ */
+class FieldsSampler {
+    private final int left, up; // left upper corner of area
+    private final int width, height; // size of area
+    private final int[] fields; // free-list of encoded fields ((x - left) * height + y - up)
+    private final int[] positions; // position of every field in free-list, -1 if field is not in set
+    private int size = 0; // number of fields in set
+
+    /**
+     * Creates empty set for area
+     *
+     * @param left  - left side of area
+     * @param up    - upper side of area
+     * @param right - right side of area (inclusive)
+     * @param down  - bottom side of area (inclusive)
+     */
+    FieldsSampler(int left, int up, int right, int down) {
+        this.left = left;
+        this.up = up;
+        width = (right >= left) ? right - left + 1 : 0;
+        height = (down >= up) ? down - up + 1 : 0;
+        fields = new int[width * height];
+        positions = new int[width * height];
+        Arrays.fill(positions, -1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param x - coordinate x
+     * @param y - coordinate y
+     * @return encoded field or -1 if field is out of area
+     */
+    private int encode(int x, int y) {
+        if (x < left || y < up || x >= left + width || y >= up + height) {
+            return -1;
+        }
+        return (x - left) * height + (y - up);
+    }
+
+    /**
+     * Adds field to set
+     *
+     * @param x - coordinate x
+     * @param y - coordinate y
+     */
+    void add(int x, int y) {
+        int field = encode(x, y);
+        if (field != -1 && positions[field] == -1) {
+            fields[size] = field;
+            positions[field] = size++;
+        }
+    }
+
+    /**
+     * Removes field from set (if exists)
+     *
+     * @param x - coordinate x
+     * @param y - coordinate y
+     */
+    void remove(int x, int y) {
+        int field = encode(x, y);
+        if (field != -1 && positions[field] != -1) {
+            int position = positions[field];
+            int last = fields[--size];
+            fields[position] = last;
+            positions[last] = position;
+            positions[field] = -1;
+        }
+    }
+
+    /**
+     * Removes fields in circle with middle in point (x,y) and radius r
+     *
+     * @param x - coordinate x of point
+     * @param y - coordinate y of point
+     * @param r - radius
+     */
+    void removeCircle(int x, int y, int r) {
+        for (int i = x - r; i <= x + r; i++) {
+            for (int j = y - r; j <= y + r; j++) {
+                if ((x - i) * (x - i) + (y - j) * (y - j) <= r * r) {
+                    remove(i, j);
+                }
+            }
+        }
+    }
+
+    /**
+     * Chooses random field, with uniform probability
+     *
+     * @param rand - random generator
+     * @return encoded field, see getX and getY
+     */
+    int choose(RandomGenerator rand) {
+        return fields[rand.nextInt(size)];
+    }
+
+    int getX(int field) {
+        return left + field / height;
+    }
+
+    int getY(int field) {
+        return up + field % height;
+    }
+}
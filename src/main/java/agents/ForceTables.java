@@ -0,0 +1,94 @@
+package agents;
+
+import simulation.Constants;
+import simulation.Parameters;
+
+/**
+ * Precomputed interact forces of Helbing's model (exponential in distance), used instead of Math.exp
+ * when fastMath parameter is set
+ * <p/>
+ * Forces are tabulated for distances up to view range and linearly interpolated. Relative error of linear
+ * interpolation of exp(-x / b) with step h is h^2 / (8 b^2) plus terms of higher order (smaller than 0.4 of the first
+ * one for h^2 / (8 b^2) up to 0.01), so step is chosen from allowed error with margin for them.
+ * Distances out of tables (never in range of view) are computed exactly.
+ */
+final class ForceTables {
+    private final int agentRadius, viewRange; // parameters used to build tables
+    private final double maxError; // max relative error of tables
+    private final Table agents; // interact force between agents
+    private final Table obstacles; // interact force between agent and obstacle
+
+    /**
+     * Builds tables for given parameters
+     *
+     * @param parameters - parameters of simulation
+     */
+    ForceTables(Parameters parameters) {
+        agentRadius = parameters.agentRadius;
+        viewRange = parameters.viewRange;
+        maxError = parameters.fastMathError;
+        agents = new Table(Constants.a, 2 * agentRadius, Constants.b, viewRange + 1, maxError);
+        obstacles = new Table(Constants.aw, agentRadius, Constants.bw, viewRange + 1, maxError);
+    }
+
+    /**
+     * @param parameters - parameters of simulation
+     * @return true if tables were built for the same parameters
+     */
+    boolean matches(Parameters parameters) {
+        return agentRadius == parameters.agentRadius && viewRange == parameters.viewRange && maxError == parameters.fastMathError;
+    }
+
+    /**
+     * @param dist - distance between agents
+     * @return value of interact force between agents
+     */
+    double interact(double dist) {
+        return agents.value(dist);
+    }
+
+    /**
+     * @param dist - distance between agent and obstacle
+     * @return value of interact force between agent and obstacle
+     */
+    double interactObstacle(double dist) {
+        return obstacles.value(dist);
+    }
+
+    /**
+     * Table of function scale * exp((offset - x) / length) for x from 0 to max
+     */
+    private static final class Table {
+        private final double scale, offset, length; // parameters of function
+        private final double inverseStep; // 1 / step of table
+        private final double max; // max tabulated x (exclusive)
+        private final double[] values; // values in points i * step
+
+        Table(double scale, double offset, double length, double max, double maxError) {
+            this.scale = scale;
+            this.offset = offset;
+            this.length = length;
+            this.max = max;
+            double step = length * Math.sqrt(8 * maxError / (1 + maxError));
+            inverseStep = 1 / step;
+            values = new double[(int) Math.ceil(max * inverseStep) + 2];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = exact(i * step);
+            }
+        }
+
+        private double exact(double x) {
+            return scale * Math.exp((offset - x) / length);
+        }
+
+        double value(double x) {
+            if (x < 0 || x >= max) {
+                return exact(x);
+            }
+            double position = x * inverseStep;
+            int i = (int) position;
+            double t = position - i;
+            return values[i] + (values[i + 1] - values[i]) * t;
+        }
+    }
+}
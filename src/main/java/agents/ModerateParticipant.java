@@ -1,7 +1,5 @@
 package agents;
 
-import org.jscience.mathematics.vector.Float64Vector;
-import simulation.Parameters;
 
 import java.awt.*;
 
@@ -24,29 +22,14 @@ public class ModerateParticipant extends TroubleMaker {
     }
 
     @Override
-    protected void chooseVelocity(Float64Vector oldVelocity) {
-        basicDesiredVelocity = findDesiredDirection(Parameters.desiredPoint).times(5);
+    protected void chooseVelocity(double oldVelocityX, double oldVelocityY) {
+        findDesiredDirection(parameters.desiredPoint);
+        store.desiredVelocityX[id] *= 5;
+        store.desiredVelocityY[id] *= 5;
         if (neighbors.size() > 1) {
-            velocity = velocity.minus(velocity);
-            double sumOfValues = 0;
-            for (BaseAgent neighbor : neighbors) {
-                velocity = velocity.plus(neighbor.getVelocity());
-                sumOfValues += neighbor.getVelocity().normValue();
-            }
-            sumOfValues += basicDesiredVelocity.normValue();
-            velocity = velocity.plus(basicDesiredVelocity);
-            velocity = velocity.times(1.0 / sumOfValues).times(oldVelocity.normValue());
-            if (itersWithoutMove > 2 && velocity.normValue() < Parameters.maxVelocityModerate * 0.5) {
-                velocity = basicDesiredVelocity;
-            }
+            followNeighbors(oldVelocityX, oldVelocityY, 2, parameters.maxVelocityModerate);
         } else {
-            velocity = basicDesiredVelocity;
+            setVelocityToDesired(1);
         }
     }
-
-    @Override
-    public void changePosition() {
-        super.changePosition();
-        pushSomebody(findClosestInDesiredDirection());
-    }
 }
@@ -0,0 +1,98 @@
+package agents;
+
+import simulation.Parameters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bookkeeping of Verlet lists - neighbors of agents found in view range enlarged by skin and reused in next iterations
+ * <p/>
+ * Every agent looks for neighbors around its new position (query point) and rebuilds its own list (around its position)
+ * when its displacement since its last rebuild exceeds a quarter of skin, or the displacement plus distance to query point
+ * exceeds half of skin. Rebuilt agent is added to lists of agents it has found, so lists stay symmetric and agents
+ * standing still keep their lists. Since the later rebuild of any two agents, their distance seen from query point
+ * has changed by at most skin, so no agent out of list can come in range of view. Agent with query point further than
+ * half of skin looks for neighbors directly. Lists grown by added agents are rebuilt as well, all lists are rebuilt
+ * when parameters or objects on board change.
+ */
+final class NeighborLists {
+    private double[] positionX = new double[0], positionY = new double[0]; // positions of agents at their last rebuild
+    private boolean[] direct = new boolean[0]; // if agent looks for neighbors directly in current iteration
+    private int[] rebuilt = new int[0]; // ids of agents rebuilding lists in current iteration (ascending)
+    private int rebuiltCount = 0; // number of agents rebuilding lists in current iteration
+    private final ArrayList<BaseAgent> found = new ArrayList<>(); // agents found by rebuilt agent
+    private int agentsCount = -1, obstaclesCount = -1; // number of objects at the last rebuild of all lists
+    private int viewRange = -1, skin = -1; // parameters at the last rebuild of all lists
+
+    /**
+     * Marks agents which rebuild lists and which look for neighbors directly in current iteration
+     *
+     * @param agents         - all agents (index of agent equals to its id)
+     * @param obstaclesCount - number of obstacles on board
+     * @param parameters     - parameters of simulation
+     * @return true if any agent rebuilds list or looks for neighbors directly (index has to be updated)
+     */
+    boolean update(List<BaseAgent> agents, int obstaclesCount, Parameters parameters) {
+        boolean all = agents.size() != agentsCount || obstaclesCount != this.obstaclesCount
+                || parameters.viewRange != viewRange || parameters.neighborSkin != skin;
+        if (all) {
+            agentsCount = agents.size();
+            this.obstaclesCount = obstaclesCount;
+            viewRange = parameters.viewRange;
+            skin = parameters.neighborSkin;
+            if (positionX.length < agentsCount) {
+                positionX = new double[agentsCount * 2];
+                positionY = new double[agentsCount * 2];
+                direct = new boolean[agentsCount * 2];
+                rebuilt = new int[agentsCount * 2];
+            }
+        }
+        rebuiltCount = 0;
+        boolean anyDirect = false;
+        for (int i = 0; i < agentsCount; i++) {
+            BaseAgent agent = agents.get(i);
+            double x = agent.getPositionX(), y = agent.getPositionY();
+            double displacement = distance(x - positionX[i], y - positionY[i]);
+            double query = distance(agent.nextPositionX() - x, agent.nextPositionY() - y);
+            direct[i] = 2 * query > skin;
+            anyDirect |= direct[i];
+            if (all || 4 * displacement > skin || (!direct[i] && 2 * (displacement + query) > skin)
+                    || agent.isCachedListOverfull()) {
+                positionX[i] = x;
+                positionY[i] = y;
+                rebuilt[rebuiltCount++] = i;
+            }
+        }
+        return rebuiltCount > 0 || anyDirect;
+    }
+
+    /**
+     * Rebuilds lists of marked agents and adds every rebuilt agent to lists of agents it has found (uses board's index)
+     *
+     * @param agents - all agents (index of agent equals to its id)
+     */
+    void rebuild(List<BaseAgent> agents) {
+        for (int i = 0; i < rebuiltCount; i++) {
+            agents.get(rebuilt[i]).rebuildCachedNeighbors(found);
+        }
+        for (int i = 0; i < rebuiltCount; i++) {
+            BaseAgent agent = agents.get(rebuilt[i]);
+            for (int j = 0; j < agent.getCachedCount(); j++) {
+                agents.get(agent.getCachedId(j)).addCachedNeighbor(agent.id);
+            }
+        }
+    }
+
+    /**
+     * @param id - id of agent
+     * @return true if agent looks for neighbors directly in current iteration
+     */
+    boolean isDirect(int id) {
+        return id >= agentsCount || direct[id];
+    }
+
+    private static double distance(double dx, double dy) {
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
@@ -1,19 +1,122 @@
 package agents;
 
+import java.util.Comparator;
+
 /**
- * Obstacle simulation object
+ * Obstacle simulation object - rectangle filled with obstacle fields
+ * <p/>
+ * Single instance represents whole rectangle, every board field inside of it refers to the same obstacle
  */
 class Obstacle extends BasicSimObject {
+    static final Comparator<Obstacle> BY_POSITION = new Comparator<Obstacle>() {
+        @Override
+        public int compare(Obstacle o1, Obstacle o2) {
+            if (o1.left != o2.left) {
+                return Integer.compare(o1.left, o2.left);
+            }
+            if (o1.up != o2.up) {
+                return Integer.compare(o1.up, o2.up);
+            }
+            if (o1.right != o2.right) {
+                return Integer.compare(o1.right, o2.right);
+            }
+            return Integer.compare(o1.down, o2.down);
+        }
+    }; // order of obstacles independent of order of finding them
+
+    private final int left, up, right, down; // bounds of rectangle (inclusive)
 
     /**
      * Creates obstacle
      *
-     * @param x - position on board x
-     * @param y - position on board y
+     * @param left  - position of left side on board x
+     * @param up    - position of upper side on board y
+     * @param right - position of right side on board x
+     * @param down  - position of bottom side on board y
      */
-    public Obstacle(Integer x, Integer y) {
-        setActualPositionX(x);
-        setActualPositionY(y);
+    public Obstacle(int left, int up, int right, int down) {
+        this.left = left;
+        this.up = up;
+        this.right = right;
+        this.down = down;
         agent = false;
     }
+
+    @Override
+    public int getActualPositionX() {
+        return left;
+    }
+
+    @Override
+    public int getActualPositionY() {
+        return up;
+    }
+
+    int getLeft() {
+        return left;
+    }
+
+    int getUp() {
+        return up;
+    }
+
+    int getRight() {
+        return right;
+    }
+
+    int getDown() {
+        return down;
+    }
+
+    /**
+     * @param x - coordinate x of point
+     * @return coordinate x of point of obstacle closest to given one
+     */
+    int closestX(int x) {
+        return (x < left) ? left : (x > right) ? right : x;
+    }
+
+    /**
+     * @param y - coordinate y of point
+     * @return coordinate y of point of obstacle closest to given one
+     */
+    int closestY(int y) {
+        return (y < up) ? up : (y > down) ? down : y;
+    }
+
+    /**
+     * @param x - coordinate x of point
+     * @param y - coordinate y of point
+     * @return square of distance between given point and closest point of obstacle
+     */
+    int squareDistanceTo(int x, int y) {
+        int dx = x - closestX(x), dy = y - closestY(y);
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * @param x - exact coordinate x of point
+     * @return exact coordinate x of point of obstacle closest to given one
+     */
+    double closestX(double x) {
+        return (x < left) ? left : (x > right) ? right : x;
+    }
+
+    /**
+     * @param y - exact coordinate y of point
+     * @return exact coordinate y of point of obstacle closest to given one
+     */
+    double closestY(double y) {
+        return (y < up) ? up : (y > down) ? down : y;
+    }
+
+    /**
+     * @param x - exact coordinate x of point
+     * @param y - exact coordinate y of point
+     * @return square of distance between given point and closest point of obstacle
+     */
+    double squareDistanceTo(double x, double y) {
+        double dx = x - closestX(x), dy = y - closestY(y);
+        return dx * dx + dy * dy;
+    }
 }
@@ -1,7 +1,5 @@
 package agents;
 
-import org.jscience.mathematics.vector.Float64Vector;
-import simulation.Parameters;
 
 import java.awt.*;
 
@@ -30,7 +28,8 @@ public class PassiveParticipant extends BaseAgent {
      */
     private boolean isVicinityActive() {
         boolean isPoliceman = false, isTrouble = false;
-        for (BaseAgent neighbor : neighbors) {
+        for (int i = 0; i < neighbors.size(); i++) {
+            BaseAgent neighbor = neighbors.get(i);
             if (neighbor.getType() == AgentsTypes.POLICEMAN) {
                 isPoliceman = true;
             } else if (neighbor.getType() == AgentsTypes.TROUBLEMAKER) {
@@ -41,27 +40,16 @@ public class PassiveParticipant extends BaseAgent {
     }
 
     @Override
-    protected void chooseVelocity(Float64Vector oldVelocity) {
-        basicDesiredVelocity = findDesiredDirection(Parameters.desiredPoint);
+    protected void chooseVelocity(double oldVelocityX, double oldVelocityY) {
+        findDesiredDirection(parameters.desiredPoint);
         if (!isVicinityActive()) {
             if (neighbors.size() > 1) {
-                velocity = velocity.minus(velocity);
-                double sumOfValues = 0;
-                for (BaseAgent neighbor : neighbors) {
-                    velocity = velocity.plus(neighbor.getVelocity());
-                    sumOfValues += neighbor.getVelocity().normValue();
-                }
-                sumOfValues += basicDesiredVelocity.normValue();
-                velocity = velocity.plus(basicDesiredVelocity);
-                velocity = velocity.times(1.0 / sumOfValues).times(oldVelocity.normValue());
-                if (itersWithoutMove > 5 && velocity.normValue() < Parameters.maxVelocityPassive * 0.5) {
-                    velocity = basicDesiredVelocity;
-                }
+                followNeighbors(oldVelocityX, oldVelocityY, 5, parameters.maxVelocityPassive);
             } else {
-                velocity = basicDesiredVelocity;
+                setVelocityToDesired(1);
             }
         } else {
-            velocity = addFluctuations(basicDesiredVelocity.times(-2), Parameters.maxVelocityPassive);
+            setVelocityToDesiredWithFluctuations(-2, parameters.maxVelocityPassive);
         }
     }
 }
@@ -0,0 +1,99 @@
+package agents;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Propagation of forces in police cordon (see considerForces in Policeman class), done in sweeps
+ * <p/>
+ * In every sweep each active policeman plans its transfer of force concurrently (reading only),
+ * then plans are applied in single thread in order of activation. Policeman given force by other one before applying
+ * its own plan makes the plan again (in applying thread), so every transfer uses current force, as if policemen
+ * were considered one by one. Policemen given force in a sweep and not considered yet are active in the next one.
+ * Each policeman is considered at most once per iteration, so there are at most as many sweeps as policemen.
+ */
+public class PoliceForcePropagation {
+    private static final int MIN_CHUNK = 32; // min number of policemen planned by single task
+
+    private ArrayList<Policeman> active = new ArrayList<>(); // policemen considered in current sweep
+    private ArrayList<Policeman> nextActive = new ArrayList<>(); // policemen given force in current sweep
+
+    /**
+     * Propagates forces through police cordon, starting from policemen pushed by crowd
+     *
+     * @param policemen - all policemen
+     * @param pool      - executors used to plan transfers, null to plan in calling thread
+     */
+    public void propagate(List<Policeman> policemen, ForkJoinPool pool) {
+        active.clear();
+        for (int i = 0; i < policemen.size(); i++) {
+            Policeman pol = policemen.get(i);
+            if (pol.getState() == AgentsStates.IS_PUSHED) {
+                pol.markConsidered();
+                active.add(pol);
+            }
+        }
+        while (!active.isEmpty()) {
+            /* Multi threads, planning */
+            if (pool == null || active.size() <= MIN_CHUNK) {
+                planRange(0, active.size());
+            } else {
+                int threshold = Math.max(MIN_CHUNK, active.size() / (pool.getParallelism() * 4));
+                pool.invoke(new PlanTask(0, active.size(), threshold));
+            }
+
+            /* One thread, applying */
+            nextActive.clear();
+            for (int i = 0; i < active.size(); i++) {
+                Policeman toAdd = active.get(i).applyForceTransfer();
+                if (toAdd != null && !toAdd.isConsidered()) {
+                    toAdd.markConsidered();
+                    nextActive.add(toAdd);
+                }
+            }
+            ArrayList<Policeman> temp = active;
+            active = nextActive;
+            nextActive = temp;
+        }
+    }
+
+    /**
+     * Plans transfers of range of active policemen
+     *
+     * @param from - first index
+     * @param to   - last index (exclusive)
+     */
+    private void planRange(int from, int to) {
+        for (int i = from; i < to; i++) {
+            active.get(i).planForceTransfer();
+        }
+    }
+
+    /**
+     * Task planning transfers of range of active policemen, splits range bigger than threshold
+     */
+    private final class PlanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to; // range of policemen, to exclusive
+        private final int threshold; // max size of range computed without splitting
+
+        PlanTask(int from, int to, int threshold) {
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                planRange(from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PlanTask(from, middle, threshold), new PlanTask(middle, to, threshold));
+            }
+        }
+    }
+}
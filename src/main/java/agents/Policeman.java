@@ -1,13 +1,11 @@
 package agents;
 
 import org.apache.commons.math3.util.Pair;
-import org.jscience.mathematics.vector.Float64Vector;
 import simulation.Constants;
-import simulation.Parameters;
 import utils.Utils;
 
 import java.awt.*;
-import java.util.LinkedList;
+import java.util.ArrayList;
 
 /**
  * Representation of policeman
@@ -17,7 +15,13 @@ public class Policeman extends BaseAgent {
     private double maxReactionForce = 0.0; // maximal value of reaction force
     private final Pair<Integer, Integer> desiredPoint; // position to hold
     private int wasPushedItersAgo = -1; // how many iterations ago was policeman pushed
-    private LinkedList<Policeman> pushing = new LinkedList<>(); // list of policemen which (indirectly) pushes current policeman
+    private final ArrayList<Policeman> pushing = new ArrayList<>(); // list of policemen which (indirectly) pushes current policeman
+    private double reactionX, reactionY; // reaction force calculated by react
+    private boolean considered = false; // if forces were considered in current iteration (see PoliceForcePropagation)
+    private boolean planExcess = false; // if policeman has excess of force to give (see planForceTransfer)
+    private double planReactionX, planReactionY; // planned reaction force
+    private Policeman planTarget; // policeman planned to be given excess of force
+    private boolean planOutdated = false; // if policeman was given force after planning (plan has to be made again)
 
     /**
      * Creates policeman agent
@@ -30,17 +34,20 @@ public class Policeman extends BaseAgent {
         super(x, y, board);
         type = AgentsTypes.POLICEMAN;
         colour = Color.BLUE;
-        velocity = Float64Vector.valueOf(0, 0);
-        basicDesiredVelocity = Float64Vector.valueOf(0, 0);
-        maxReactionForce = m * (Parameters.maxVelocityTrouble - 0) / Constants.timePeriod;
+        store.velocityX[id] = 0;
+        store.velocityY[id] = 0;
+        store.desiredVelocityX[id] = 0;
+        store.desiredVelocityY[id] = 0;
+        maxReactionForce = store.mass[id] * (parameters.maxVelocityTrouble - 0) / Constants.timePeriod;
         desiredPoint = new Pair<>(x, y);
         state = AgentsStates.NONE;
-        m = 80;
+        store.mass[id] = 80;
     }
 
     @Override
-    public void bePushed(Float64Vector force) {
-        pushed = pushed.plus(force);
+    public void bePushed(double forceX, double forceY) {
+        store.pushedX[id] += forceX;
+        store.pushedY[id] += forceY;
         state = AgentsStates.IS_PUSHED;
         wasPushedItersAgo = 0;
     }
@@ -48,21 +55,24 @@ public class Policeman extends BaseAgent {
     /**
      * Pushes agent with force originating from other policeman
      *
-     * @param force - push force
+     * @param forceX - push force, x coordinate
+     * @param forceY - y coordinate
      */
-    void bePushedByPolice(Float64Vector force) {
-        pushed = pushed.plus(force);
+    void bePushedByPolice(double forceX, double forceY) {
+        store.pushedX[id] += forceX;
+        store.pushedY[id] += forceY;
         wasPushedItersAgo = 0;
+        planOutdated = true;
     }
 
     /**
      * Assigns forces used on agent in previous iteration to pushedToApply vector, which will be considered in current iteration
      */
     public void applyPushForces() {
-        pushToApply = pushed;
-        pushed = Float64Vector.valueOf(0, 0);
+        super.applyPushForces();
         wasPushedItersAgo += 1;
-        pushing = new LinkedList<>();
+        pushing.clear();
+        considered = false;
         state = AgentsStates.NONE;
     }
 
@@ -71,7 +81,7 @@ public class Policeman extends BaseAgent {
      *
      * @param pushing - pushing policemen
      */
-    void pushedBy(LinkedList<Policeman> pushing) {
+    void pushedBy(ArrayList<Policeman> pushing) {
         this.pushing.addAll(pushing);
     }
 
@@ -86,40 +96,126 @@ public class Policeman extends BaseAgent {
      * @return policeman who was given force by current one or null
      */
     public Policeman considerForces() {
-        double pushForceValue = pushed.normValue();
-        Float64Vector reaction;
+        planForceTransfer();
+        return applyForceTransfer();
+    }
+
+    /**
+     * First part of considerForces - finds excess of force and policeman to give it to,
+     * reads state of other policemen only (may be called concurrently for different policemen)
+     */
+    void planForceTransfer() {
+        planOutdated = false;
+        double pushedX = store.pushedX[id], pushedY = store.pushedY[id];
+        double pushForceValue = Math.sqrt(pushedX * pushedX + pushedY * pushedY);
         if (pushForceValue > maxReactionForce) {
-            reaction = Float64Vector.valueOf(pushed.get(0).doubleValue() * maxReactionForce / pushForceValue, pushed.get(1).doubleValue() * maxReactionForce / pushForceValue).times(-1);
-            Policeman closestPoliceman = findClosestInForceDirection(pushed);
-            if (closestPoliceman != null) {
-                closestPoliceman.bePushedByPolice(pushed.plus(reaction));
-                pushed = reaction.times(-1);
+            planReactionX = -pushedX * maxReactionForce / pushForceValue;
+            planReactionY = -pushedY * maxReactionForce / pushForceValue;
+            planExcess = true;
+            planTarget = findClosestInForceDirection(pushedX, pushedY);
+        } else {
+            planExcess = false;
+            planTarget = null;
+        }
+    }
+
+    /**
+     * Second part of considerForces - gives planned excess of force to other policemen (see planForceTransfer),
+     * plan is made again if policeman was given force after planning
+     *
+     * @return policeman who was given force by current one or null
+     */
+    Policeman applyForceTransfer() {
+        if (planOutdated) {
+            planForceTransfer();
+        }
+        if (planExcess) {
+            double excessX = store.pushedX[id] + planReactionX, excessY = store.pushedY[id] + planReactionY;
+            if (planTarget != null) {
+                planTarget.bePushedByPolice(excessX, excessY);
+                store.pushedX[id] = -planReactionX;
+                store.pushedY[id] = -planReactionY;
                 pushing.add(this);
-                closestPoliceman.pushedBy(pushing);
-                return closestPoliceman;
+                planTarget.pushedBy(pushing);
+                return planTarget;
             } else {
-                for (Policeman pol : pushing) {
-                    pol.bePushedByPolice(pushed.plus(reaction).times(1.0 / (pushing.size() + 1)));
+                for (int i = 0; i < pushing.size(); i++) {
+                    pushing.get(i).bePushedByPolice(excessX / (pushing.size() + 1), excessY / (pushing.size() + 1));
                 }
-                pushed = pushed.minus(pushed.plus(reaction).times(pushing.size() / (pushing.size() + 1)));
+                double part = pushing.size() / (pushing.size() + 1);
+                store.pushedX[id] -= excessX * part;
+                store.pushedY[id] -= excessY * part;
             }
         }
         return null;
     }
 
+    /**
+     * @return true if force pushing policeman is bigger than maximal reaction force (excess is given to other policemen
+     * in next iteration, see considerForces)
+     */
+    public boolean hasExcessOfForce() {
+        double pushedX = store.pushedX[id], pushedY = store.pushedY[id];
+        return Math.sqrt(pushedX * pushedX + pushedY * pushedY) > maxReactionForce;
+    }
+
+    double getMaxReactionForce() {
+        return maxReactionForce;
+    }
+
+    int getWasPushedItersAgo() {
+        return wasPushedItersAgo;
+    }
+
+    Pair<Integer, Integer> getDesiredPoint() {
+        return desiredPoint;
+    }
+
+    /**
+     * Restores state of policeman saved in checkpoint (see BoardCheckpoint)
+     *
+     * @param maxReactionForce  - maximal value of reaction force
+     * @param wasPushedItersAgo - how many iterations ago was policeman pushed
+     */
+    void restore(double maxReactionForce, int wasPushedItersAgo) {
+        this.maxReactionForce = maxReactionForce;
+        this.wasPushedItersAgo = wasPushedItersAgo;
+    }
+
+    /**
+     * @return true if forces of policeman were already (or are going to be) considered in current iteration
+     */
+    boolean isConsidered() {
+        return considered;
+    }
+
+    /**
+     * Marks forces of policeman as considered in current iteration
+     */
+    void markConsidered() {
+        considered = true;
+    }
+
     /**
      * Finds closest policeman in force direction
      *
-     * @param force - given force
+     * @param forceX - given force, x coordinate
+     * @param forceY - y coordinate
      * @return policeman (may be null, if not exists)
      */
-    Policeman findClosestInForceDirection(Float64Vector force) {
-        double actualMin = 4 * Parameters.agentRadius * Parameters.agentRadius;
+    Policeman findClosestInForceDirection(double forceX, double forceY) {
+        double actualMin = 4 * parameters.agentRadius * parameters.agentRadius;
         Policeman actualClosest = null;
-        Float64Vector forceNew = normalizeVector(force, 2);
-        for (BaseAgent neighbor : neighbors) {
+        double forceValue = Math.sqrt(forceX * forceX + forceY * forceY);
+        if (forceValue > 2) {
+            forceX *= 2 / forceValue;
+            forceY *= 2 / forceValue;
+        }
+        double x = getPositionX() + forceX * Constants.timePeriod, y = getPositionY() + forceY * Constants.timePeriod;
+        for (int i = 0; i < neighbors.size(); i++) {
+            BaseAgent neighbor = neighbors.get(i);
             if (neighbor.getType() == AgentsTypes.POLICEMAN) {
-                double distance = utils.Utils.calculateSquareDistancePoints(getActualPositionX() + forceNew.get(0).doubleValue() * Constants.timePeriod, getActualPositionY() + forceNew.get(1).doubleValue() * Constants.timePeriod, neighbor.getActualPositionX(), neighbor.getActualPositionY());
+                double distance = Utils.calculateSquareDistancePoints(x, y, neighbor.getPositionX(), neighbor.getPositionY());
                 if (distance < actualMin) {
                     actualMin = distance;
                     actualClosest = (Policeman) neighbor;
@@ -130,89 +226,100 @@ public class Policeman extends BaseAgent {
     }
 
     /**
-     * Reaction to push force
-     *
-     * @return vector of reaction force
+     * Reaction to push force, result is stored in reactionX, reactionY
      */
-    private Float64Vector react() {
-        Float64Vector reaction;
-        double pushForceValue = pushToApply.normValue();
+    private void react() {
+        double pushX = store.pushToApplyX[id], pushY = store.pushToApplyY[id];
+        double pushForceValue = Math.sqrt(pushX * pushX + pushY * pushY);
         if (pushForceValue > maxReactionForce) {
-            reaction = Float64Vector.valueOf(pushToApply.get(0).doubleValue() * maxReactionForce / pushForceValue, pushToApply.get(1).doubleValue() * maxReactionForce / pushForceValue).times(-1);
+            reactionX = -pushX * maxReactionForce / pushForceValue;
+            reactionY = -pushY * maxReactionForce / pushForceValue;
             if (wasPushedItersAgo >= 0) {
                 if (wasPushedItersAgo < 3) {
-                    pushed = pushed.plus(pushToApply.plus(reaction).times(0.8));
+                    store.pushedX[id] += (pushX + reactionX) * 0.8;
+                    store.pushedY[id] += (pushY + reactionY) * 0.8;
                 }
             }
         } else {
-            reaction = pushToApply.times(-1);
+            reactionX = -pushX;
+            reactionY = -pushY;
         }
-        return reaction;
     }
 
 
     /**
-     * Checks if agent is on his desired position
+     * Checks if agent is on his desired position (closer than half of field in both dimensions)
      *
      * @return true if so
      */
     private boolean isNotOnDesiredPosition() {
-        return !getActualPositionX().equals(desiredPoint.getFirst()) || !getActualPositionY().equals(desiredPoint.getSecond());
+        return Math.abs(getPositionX() - desiredPoint.getFirst()) >= 0.5 || Math.abs(getPositionY() - desiredPoint.getSecond()) >= 0.5;
     }
 
     /**
-     * Calculates agents' impact on agent (considers everyone except of policemen)
+     * Calculates agents' impact on agent (considers everyone except of policemen) and adds it to force accumulated in store
      *
-     * @param oldVelocity - velocity vector from previous iteration
-     * @param special     - if true, interact force is not calculated
-     * @return vector representing impact force
+     * @param oldVelocityX - velocity vector from previous iteration, x coordinate
+     * @param oldVelocityY - y coordinate
+     * @param special      - if true, interact force is not calculated
      */
-    Float64Vector detectOtherAgents(Float64Vector oldVelocity, boolean special) {
-        Float64Vector toReturn = Float64Vector.valueOf(0.0, 0.0);
-        for (BaseAgent act : neighbors) {
-            double dist = Math.sqrt(Utils.calculateSquareDistancePoints(getActualPositionX(), getActualPositionY(), act.getActualPositionX(), act.getActualPositionY()));
+    void detectOtherAgents(double oldVelocityX, double oldVelocityY, boolean special) {
+        double oldSpeed = Math.sqrt(oldVelocityX * oldVelocityX + oldVelocityY * oldVelocityY);
+        double forceX = 0, forceY = 0;
+        for (int i = 0; i < neighbors.size(); i++) {
+            BaseAgent act = neighbors.get(i);
+            loadPair(i, act);
+            double dist = pairDistance, nx = pairNormalX, ny = pairNormalY;
             // interact
-            Float64Vector nij = calculateNIJVector(act);
-            Float64Vector interactForce = Float64Vector.valueOf(0, 0);
+            double value = 0;
             if (act.getType() != AgentsTypes.POLICEMAN) {
                 if (!special) {
-                    interactForce = calculateInteractForce(nij, dist);
+                    value = pairInteract;
                 }
             } else {
                 Policeman actual = (Policeman) act;
                 if (actual.isNotOnDesiredPosition() && actual.getState() == AgentsStates.IS_PUSHED) {
-                    interactForce = calculateInteractForce(nij, dist);
+                    value = pairInteract;
                 }
             }
-            if (Parameters.agentRadius + Parameters.agentRadius > dist) {
-                Float64Vector bodyForce = calculateBodyForce(nij, dist);
-                Float64Vector slidForce = calculateSlidForce(nij, act, oldVelocity, dist);
-                toReturn = toReturn.plus(interactForce).plus(bodyForce).plus(slidForce);
+            if (parameters.agentRadius + parameters.agentRadius > dist) {
+                value += calculateBodyForce(dist);
+                double slid = calculateSlidForce(act, oldSpeed, dist);
+                forceX += -ny * slid;
+                forceY += nx * slid;
             } else {
-                toReturn = toReturn.plus(interactForce.times(0.1));
+                value *= 0.1;
             }
+            forceX += nx * value;
+            forceY += ny * value;
         }
-        return toReturn;
+        store.forceX[id] += forceX;
+        store.forceY[id] += forceY;
     }
 
     @Override
-    protected void socialForces(Float64Vector oldVelocity) {
-        acceleration = velocity.minus(oldVelocity).times(1.0 / Constants.timePeriod);
+    protected void socialForces(double oldVelocityX, double oldVelocityY) {
+        store.forceX[id] = store.pushToApplyX[id];
+        store.forceY[id] = store.pushToApplyY[id];
         if (isNotOnDesiredPosition()) {
-            acceleration = acceleration.plus(detectOtherAgents(oldVelocity, true).times(1.0 / m));
-            acceleration = acceleration.plus(detectObstacles(oldVelocity).times(1.0 / m));
+            detectOtherAgents(oldVelocityX, oldVelocityY, true);
+            detectObstacles(oldVelocityX, oldVelocityY);
         }
 //        else {
-//            acceleration = acceleration.plus(detectOtherAgents(oldVelocity, true).times(1.0 / m));
+//            detectOtherAgents(oldVelocityX, oldVelocityY, true);
 //        }
-        acceleration = acceleration.plus(pushToApply.times(1.0 / m));
-        acceleration = acceleration.plus(react().times(1.0 / m));
+        react();
+        store.forceX[id] += reactionX;
+        store.forceY[id] += reactionY;
+        applySocialForce(oldVelocityX, oldVelocityY);
     }
 
     @Override
-    protected void chooseVelocity(Float64Vector oldVelocity) {
-        if (react().normValue() < 0.5) {
-            velocity = findDesiredDirection(desiredPoint);
+    protected void chooseVelocity(double oldVelocityX, double oldVelocityY) {
+        react();
+        if (Math.sqrt(reactionX * reactionX + reactionY * reactionY) < 0.5) {
+            findDesiredDirection(desiredPoint);
+            setVelocityToDesired(1);
         }
     }
 
@@ -1,47 +1,46 @@
 package agents;
 
 import org.apache.commons.math3.util.Pair;
+import org.apache.commons.math3.random.RandomGenerator;
 import simulation.Parameters;
-import utils.Utils;
 
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
 
 public abstract class SimulationObjectsGenerator {
 
     /**
-     * Removes points to remove from both other given lists
-     *
-     * @param allAvailableFields - all available fields
-     * @param pointsToRemove     - fields to remove from available
-     * @param availableFields    - fields available to create agents
-     */
-    private static void removeFieldsFromAvailable(LinkedHashSet<Pair<Integer, Integer>> allAvailableFields, LinkedList<Pair<Integer, Integer>> pointsToRemove, LinkedHashSet<Pair<Integer, Integer>> availableFields) {
-        for (Pair<Integer, Integer> aPointsToRemove : pointsToRemove) {
-            availableFields.remove(aPointsToRemove);
-            allAvailableFields.remove(aPointsToRemove);
-        }
-    }
-
-    /**
-     * Randomly chooses fields from available.
+     * Randomly chooses fields from available, so that chosen fields are not closer than 2 * agentRadius + crowdSparsity.
      * Also modifies set of allAvailableFields.
+     * <p/>
+     * Available fields from given rectangle are copied to FieldsSampler, so every choice and removal takes constant time
      *
      * @param availableFields    - fields available to create agents
      * @param allAvailableFields - all available fields
+     * @param constraintLU       - left upper corner of rectangle containing available fields
+     * @param constraintRD       - right bottom
+     * @param rand               - random generator
+     * @param parameters         - parameters of simulation
      * @return list of chosen fields
      */
-    private static ArrayList<Pair<Integer, Integer>> getFields(LinkedHashSet<Pair<Integer, Integer>> availableFields, LinkedHashSet<Pair<Integer, Integer>> allAvailableFields) {
-        ArrayList<Pair<Integer, Integer>> fields = new ArrayList<>(availableFields.size() / 10);
+    private static ArrayList<Pair<Integer, Integer>> getFields(FieldsBitmap availableFields, FieldsBitmap allAvailableFields,
+                                                               Pair<Integer, Integer> constraintLU, Pair<Integer, Integer> constraintRD,
+                                                               RandomGenerator rand, Parameters parameters) {
+        int left = constraintLU.getFirst(), up = constraintLU.getSecond(), right = constraintRD.getFirst(), down = constraintRD.getSecond();
+        FieldsSampler sampler = new FieldsSampler(left, up, right, down);
+        for (int i = left; i <= right; i++) {
+            for (int j = availableFields.nextSetInColumn(i, up); j != -1 && j <= down; j = availableFields.nextSetInColumn(i, j + 1)) {
+                sampler.add(i, j);
+            }
+        }
+        ArrayList<Pair<Integer, Integer>> fields = new ArrayList<>(sampler.size() / 10);
 
-        int index = 0;
-        while (availableFields.size() > 0) {
-            Object[] avArray = availableFields.toArray();
-            fields.add((Pair<Integer, Integer>) avArray[Utils.rand.nextInt(availableFields.size())]);
-            index++;
-            LinkedList<Pair<Integer, Integer>> pointsToRemove = Utils.getPointsInVicinity(fields.get(index - 1).getFirst(), fields.get(index - 1).getSecond(), 2 * Parameters.agentRadius + Parameters.crowdSparsity);
-            removeFieldsFromAvailable(allAvailableFields, pointsToRemove, availableFields);
+        int r = 2 * parameters.agentRadius + parameters.crowdSparsity;
+        while (sampler.size() > 0) {
+            int field = sampler.choose(rand);
+            int x = sampler.getX(field), y = sampler.getY(field);
+            fields.add(new Pair<>(x, y));
+            sampler.removeCircle(x, y, r);
+            allAvailableFields.clearCircle(x, y, r);
         }
         return fields;
     }
@@ -55,14 +54,15 @@ public abstract class SimulationObjectsGenerator {
      */
     public static void generateAgentsAndUpdateBoard(Board board, Pair<Integer, Integer> constraintLU, Pair<Integer, Integer> constraintRD) {
         ArrayList<Pair<Integer, Integer>> fields;
-        fields = getFields(board.getAvailableFieldsWithConstraints(constraintLU, constraintRD, true), board.getAllAvailableFields());
-        LinkedList<BaseAgent> agents = board.getAgents();
+        fields = getFields(board.getAvailableFieldsWithConstraints(constraintLU, constraintRD, true), board.getAllAvailableFields(), constraintLU, constraintRD, board.getRandom(), board.getParameters());
+        ArrayList<BaseAgent> agents = board.getAgents();
+        Parameters parameters = board.getParameters();
         for (Pair<Integer, Integer> actField : fields) {
             BaseAgent temp;
-            int prob = Math.abs(Utils.rand.nextInt()) % 100;
-            if (prob >= 100 - Parameters.partOfTroubleMakers) {
+            int prob = Math.abs(board.getRandom().nextInt()) % 100;
+            if (prob >= 100 - parameters.partOfTroubleMakers) {
                 temp = new TroubleMaker(actField.getFirst(), actField.getSecond(), board);
-            } else if (prob >= 100 - Parameters.partOfModerate - Parameters.partOfTroubleMakers) {
+            } else if (prob >= 100 - parameters.partOfModerate - parameters.partOfTroubleMakers) {
                 temp = new ModerateParticipant(actField.getFirst(), actField.getSecond(), board);
             } else {
                 temp = new PassiveParticipant(actField.getFirst(), actField.getSecond(), board);
@@ -73,23 +73,27 @@ public abstract class SimulationObjectsGenerator {
     }
 
     /**
-     * Generates obstacles in specified area and inserts them to board.
+     * Generates obstacle (rectangle) in specified area and inserts it to board.
+     * Every free field inside of area refers to the same obstacle.
      *
      * @param board        - simulation's board
      * @param constraintLU - left upper corner of rectangle (area to insert obstacles)
      * @param constraintRD - right bottom
      */
     public static void generateObstaclesAndUpdateBoard(Board board, Pair<Integer, Integer> constraintLU, Pair<Integer, Integer> constraintRD) {
-        LinkedHashSet<Pair<Integer, Integer>> fields, allAvailableFields = board.getAllAvailableFields();
-        fields = board.getAvailableFieldsWithConstraints(constraintLU, constraintRD, false);
+        FieldsBitmap fields = board.getAvailableFieldsWithConstraints(constraintLU, constraintRD, false);
         board.getObstaclesRect().add(new Pair<>(constraintLU, constraintRD));
-        LinkedList<Obstacle> obstacles = board.getObstacles();
-        for (Pair<Integer, Integer> temp : fields) {
-            Obstacle obsTemp = new Obstacle(temp.getFirst(), temp.getSecond());
-            board.updateField(temp, obsTemp);
-            allAvailableFields.remove(temp);
-            obstacles.add(obsTemp);
+        if (constraintRD.getFirst() - constraintLU.getFirst() < 2 || constraintRD.getSecond() - constraintLU.getSecond() < 2) {
+            return; // no field inside of rectangle
+        }
+        Obstacle obstacle = new Obstacle(constraintLU.getFirst() + 1, constraintLU.getSecond() + 1, constraintRD.getFirst() - 1, constraintRD.getSecond() - 1);
+        for (int i = obstacle.getLeft(); i <= obstacle.getRight(); i++) {
+            for (int j = fields.nextSetInColumn(i, obstacle.getUp()); j != -1 && j <= obstacle.getDown(); j = fields.nextSetInColumn(i, j + 1)) {
+                board.updateField(i, j, obstacle);
+            }
         }
+        board.getAllAvailableFields().clearRectangle(obstacle.getLeft(), obstacle.getUp(), obstacle.getRight(), obstacle.getDown());
+        board.getObstacles().add(obstacle);
     }
 
     /**
@@ -100,25 +104,25 @@ public abstract class SimulationObjectsGenerator {
      * @param constraintRD  - right bottom
      */
     public static void generatePolicemenInRows(Board board, Pair<Integer, Integer> constraintLU, Pair<Integer, Integer> constraintRD) {
-        LinkedHashSet<Pair<Integer, Integer>> availableFields = board.getAvailableFieldsWithConstraints(constraintLU, constraintRD, true);
-        LinkedList<BaseAgent> agents = board.getAgents();
-        LinkedList<Policeman> policemen = board.getPolicemen();
+        FieldsBitmap availableFields = board.getAvailableFieldsWithConstraints(constraintLU, constraintRD, true);
+        ArrayList<BaseAgent> agents = board.getAgents();
+        ArrayList<Policeman> policemen = board.getPolicemen();
+        Parameters parameters = board.getParameters();
         int left = constraintLU.getFirst(), up = constraintLU.getSecond(), right = constraintRD.getFirst(), down = constraintRD.getSecond();
         if (right >= board.getSizeX()) right = board.getSizeX() - 1;
         if (left >= board.getSizeY()) left = board.getSizeY() - 1;
-        int actX = right - Parameters.agentRadius - 1, actY;
-        int step = 2 * Parameters.agentRadius;
-        while (actX >= left + Parameters.agentRadius) {
-            actY = up + Parameters.agentRadius;
-            while (actY <= down - Parameters.agentRadius) {
-                Pair<Integer, Integer> field = new Pair<>(actX, actY);
-                if (availableFields.contains(field)) {
+        int actX = right - parameters.agentRadius - 1, actY;
+        int step = 2 * parameters.agentRadius;
+        while (actX >= left + parameters.agentRadius) {
+            actY = up + parameters.agentRadius;
+            while (actY <= down - parameters.agentRadius) {
+                if (availableFields.isSet(actX, actY)) {
                     Policeman temp = new Policeman(actX, actY, board);
-                    board.updateField(field, temp);
+                    board.updateField(actX, actY, temp);
                     agents.add(temp);
                     policemen.add(temp);
-                    LinkedList<Pair<Integer, Integer>> pointsToRemove = Utils.getPointsInVicinity(field.getFirst(), field.getSecond(), 2 * Parameters.agentRadius - 1);
-                    removeFieldsFromAvailable(board.getAllAvailableFields(), pointsToRemove, availableFields);
+                    availableFields.clearCircle(actX, actY, 2 * parameters.agentRadius - 1);
+                    board.getAllAvailableFields().clearCircle(actX, actY, 2 * parameters.agentRadius - 1);
                 }
                 actY += step;
             }
@@ -0,0 +1,103 @@
+package agents;
+
+import simulation.Constants;
+
+/**
+ * Fields of board stored in square tiles, allocated on first occupancy and released when they become empty
+ * <p/>
+ * Memory scales with occupied area of board rather than with its size. Width of tile equals to width of strips
+ * moved in parallel (see StripMover), so every tile is modified by at most one thread at a time.
+ */
+class SparseGrid {
+    private static final int TILE_SIZE = Constants.moveStripWidth; // size of tile (side of square)
+    static final long TILE_BYTES = 32 + 16 + 4L * TILE_SIZE * TILE_SIZE; // approximate memory of tile (compressed references)
+
+    private final int sizeX, sizeY; // size of board
+    private final int tilesY; // number of tiles in dimension y
+    private final Tile[] tiles; // tiles column by column, null if tile is empty
+
+    /**
+     * Single tile - fields row by row and number of occupied ones
+     */
+    private static final class Tile {
+        final BasicSimObject[] fields = new BasicSimObject[TILE_SIZE * TILE_SIZE];
+        int occupied = 0;
+    }
+
+    /**
+     * Creates empty grid
+     *
+     * @param sizeX - size of board x
+     * @param sizeY - size of board y
+     */
+    SparseGrid(int sizeX, int sizeY) {
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        int tilesX = (sizeX + TILE_SIZE - 1) / TILE_SIZE;
+        tilesY = (sizeY + TILE_SIZE - 1) / TILE_SIZE;
+        tiles = new Tile[tilesX * tilesY];
+    }
+
+    /**
+     * @param x - coordinate x
+     * @param y - coordinate y
+     * @return element on given field, null if field is empty
+     * @throws ArrayIndexOutOfBoundsException if field is outside of board
+     */
+    BasicSimObject get(int x, int y) {
+        checkBounds(x, y);
+        Tile tile = tiles[(x / TILE_SIZE) * tilesY + y / TILE_SIZE];
+        return (tile != null) ? tile.fields[(y % TILE_SIZE) * TILE_SIZE + x % TILE_SIZE] : null;
+    }
+
+    /**
+     * Puts element on field, tile is allocated or released if needed
+     *
+     * @param x       - coordinate x
+     * @param y       - coordinate y
+     * @param element - element to put, null to empty field
+     * @throws ArrayIndexOutOfBoundsException if field is outside of board
+     */
+    void set(int x, int y, BasicSimObject element) {
+        checkBounds(x, y);
+        int index = (x / TILE_SIZE) * tilesY + y / TILE_SIZE;
+        Tile tile = tiles[index];
+        if (tile == null) {
+            if (element == null) {
+                return;
+            }
+            tile = new Tile();
+            tiles[index] = tile;
+        }
+        int field = (y % TILE_SIZE) * TILE_SIZE + x % TILE_SIZE;
+        BasicSimObject old = tile.fields[field];
+        if (old == null && element != null) {
+            tile.occupied++;
+        } else if (old != null && element == null) {
+            tile.occupied--;
+        }
+        tile.fields[field] = element;
+        if (tile.occupied == 0) {
+            tiles[index] = null;
+        }
+    }
+
+    private void checkBounds(int x, int y) {
+        if (x < 0 || y < 0 || x >= sizeX || y >= sizeY) {
+            throw new ArrayIndexOutOfBoundsException("Field (" + x + ", " + y + ") outside of board");
+        }
+    }
+
+    /**
+     * @return number of allocated tiles
+     */
+    int getAllocatedTiles() {
+        int count = 0;
+        for (Tile tile : tiles) {
+            if (tile != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
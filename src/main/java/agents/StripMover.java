@@ -0,0 +1,135 @@
+package agents;
+
+import simulation.Constants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Parallel movement phase of iteration
+ * <p/>
+ * Board is divided into vertical strips of constant width. Agent whose current and new position are in the same strip
+ * reads and writes only fields of this strip, so strips are moved concurrently (agents of strip in order of ids).
+ * Agents crossing border of strip are moved afterwards in single thread, then every agent interacts with others (in order of ids).
+ * Layout of strips does not depend on number of threads, so neither do results.
+ */
+public class StripMover {
+    private final int stripsCount; // number of strips
+    private final int[] stripStart; // index (in sorted) of first agent of strip, stripStart[stripsCount] = number of agents
+    private final int[] stripFill; // index (in sorted) of next agent of strip, used while sorting
+    private BaseAgent[] sorted = new BaseAgent[0]; // agents grouped by strip, in order of ids within strip
+    private final List<ArrayList<BaseAgent>> crossing = new ArrayList<>(); // agents of strips which are crossing their borders
+    private final List<StripTask> tasks = new ArrayList<>(); // tasks for executors, one per strip
+
+    /**
+     * Creates mover for board
+     *
+     * @param board - simulation board
+     */
+    public StripMover(Board board) {
+        stripsCount = board.getSizeX() / Constants.moveStripWidth + 1;
+        stripStart = new int[stripsCount + 1];
+        stripFill = new int[stripsCount];
+        for (int i = 0; i < stripsCount; i++) {
+            crossing.add(new ArrayList<BaseAgent>());
+            tasks.add(new StripTask(i));
+        }
+    }
+
+    /**
+     * @param x - coordinate x
+     * @return strip containing given coordinate
+     */
+    private int stripOf(int x) {
+        int strip = x / Constants.moveStripWidth;
+        if (x < 0) {
+            return 0;
+        }
+        return (strip < stripsCount) ? strip : stripsCount - 1;
+    }
+
+    /**
+     * Changes positions of all agents and lets them interact
+     *
+     * @param agents   - agents to move, in order of ids
+     * @param executor - executors used to move strips, null to move them in calling thread
+     */
+    public void move(List<BaseAgent> agents, ExecutorService executor) {
+        groupByStrips(agents);
+
+        /* Multi threads, agents inside of strips */
+        if (executor == null) {
+            for (StripTask task : tasks) {
+                task.call();
+            }
+        } else {
+            try {
+                executor.invokeAll(tasks);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /* One thread, agents crossing borders of strips */
+        for (int i = 0; i < stripsCount; i++) {
+            ArrayList<BaseAgent> stripCrossing = crossing.get(i);
+            for (int j = 0; j < stripCrossing.size(); j++) {
+                stripCrossing.get(j).changePosition();
+            }
+            stripCrossing.clear();
+        }
+
+        /* One thread, interactions */
+        for (BaseAgent agent : agents) {
+            agent.interact();
+        }
+    }
+
+    /**
+     * Sorts agents by strips of their current positions (counting sort, stable)
+     *
+     * @param agents - agents to sort
+     */
+    private void groupByStrips(List<BaseAgent> agents) {
+        if (sorted.length < agents.size()) {
+            sorted = new BaseAgent[agents.size() * 2];
+        }
+        Arrays.fill(stripStart, 0);
+        for (BaseAgent agent : agents) {
+            stripStart[stripOf(agent.getActualPositionX()) + 1]++;
+        }
+        for (int i = 0; i < stripsCount; i++) {
+            stripStart[i + 1] += stripStart[i];
+        }
+        System.arraycopy(stripStart, 0, stripFill, 0, stripsCount);
+        for (BaseAgent agent : agents) {
+            sorted[stripFill[stripOf(agent.getActualPositionX())]++] = agent;
+        }
+    }
+
+    /**
+     * Moves agents of single strip
+     */
+    private final class StripTask implements Callable<Void> {
+        private final int strip;
+
+        StripTask(int strip) {
+            this.strip = strip;
+        }
+
+        public Void call() {
+            for (int i = stripStart[strip]; i < stripStart[strip + 1]; i++) {
+                BaseAgent agent = sorted[i];
+                if (stripOf(agent.getNewPositionX()) == strip) {
+                    agent.changePosition();
+                } else {
+                    crossing.get(strip).add(agent);
+                }
+            }
+            return null;
+        }
+    }
+}
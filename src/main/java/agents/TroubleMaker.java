@@ -1,8 +1,5 @@
 package agents;
 
-import org.jscience.mathematics.vector.Float64Vector;
-import simulation.Constants;
-import simulation.Parameters;
 
 import java.awt.*;
 
@@ -34,38 +31,39 @@ public class TroubleMaker extends BaseAgent {
     void pushSomebody(BaseAgent target) {
         state = AgentsStates.NONE;
         if (target != null) {
-            double maxVelocity = Parameters.maxVelocityTrouble;
-            double normVelocityValue = velocity.normValue();
+            double maxVelocity = parameters.maxVelocityTrouble;
+            double normVelocityValue = getSpeed();
             if (getType() == AgentsTypes.MODERATEACTIVE) {
-                maxVelocity = Parameters.maxVelocityModerate;
+                maxVelocity = parameters.maxVelocityModerate;
             }
+            double forceFactor = maxVelocity / normVelocityValue * store.mass[id] * 0.8;
             if (target.getType() == AgentsTypes.POLICEMAN) {
                 state = AgentsStates.PUSHING_POLICEMAN;
-                target.bePushed(Float64Vector.valueOf(velocity.get(0).doubleValue() * maxVelocity / normVelocityValue, velocity.get(1).doubleValue() * maxVelocity / normVelocityValue)
-                        .times(m * 0.8).plus(pushToApply));
+                target.bePushed(store.velocityX[id] * forceFactor + store.pushToApplyX[id], store.velocityY[id] * forceFactor + store.pushToApplyY[id]);
             } else if (target.getState() == AgentsStates.PUSHING_POLICEMAN || target.getState() == AgentsStates.PUSHING_OTHER) {
                 state = AgentsStates.PUSHING_OTHER;
-                target.bePushed(Float64Vector.valueOf(velocity.get(0).doubleValue() * maxVelocity / normVelocityValue, velocity.get(1).doubleValue() * maxVelocity / normVelocityValue)
-                        .times(m * 0.8).plus(pushToApply));
+                target.bePushed(store.velocityX[id] * forceFactor + store.pushToApplyX[id], store.velocityY[id] * forceFactor + store.pushToApplyY[id]);
             }
         }
     }
 
     @Override
-    protected void socialForces(Float64Vector oldVelocity) {
-        acceleration = velocity.minus(oldVelocity).times(1.0 / Constants.timePeriod);
-        acceleration = acceleration.plus(detectOtherAgents(oldVelocity).times(1.0 / m));
-        acceleration = acceleration.plus(detectObstacles(oldVelocity).times(1.0 / m));
+    protected void socialForces(double oldVelocityX, double oldVelocityY) {
+        store.forceX[id] = 0;
+        store.forceY[id] = 0;
+        detectOtherAgents(oldVelocityX, oldVelocityY);
+        detectObstacles(oldVelocityX, oldVelocityY);
+        applySocialForce(oldVelocityX, oldVelocityY);
     }
 
     @Override
-    protected void chooseVelocity(Float64Vector oldVelocity) {
-        velocity = findDesiredDirection(Parameters.desiredPoint).times(10);
+    protected void chooseVelocity(double oldVelocityX, double oldVelocityY) {
+        findDesiredDirection(parameters.desiredPoint);
+        setVelocityToDesired(10);
     }
 
     @Override
-    public void changePosition() {
-        super.changePosition();
+    public void interact() {
         pushSomebody(findClosestInDesiredDirection());
     }
 }
@@ -0,0 +1,223 @@
+package controller;
+
+import agents.AgentsStore;
+import metrics.MetricsServer;
+import metrics.TickMetrics;
+import org.apache.commons.math3.util.Pair;
+import simulation.Parameters;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Headless simulation runner - steps the model as fast as CPU allows, without any GUI
+ * <p/>
+ * Usage: HeadlessSimulation [--ticks N] [--warmup N] [--width X] [--height Y] [--threads N] [--seed N] [--record FILE]
+ *                          [--scenario FILE] [--checkpoint-in FILE] [--checkpoint-out FILE] [--metrics-port N]
+ *                          [--fast-math ERROR] [--continuous 0|1] [--skin N]
+ */
+public class HeadlessSimulation {
+    private int ticks = 1000; // number of measured iterations
+    private int warmup = 100; // number of iterations before measurement
+    private int width = 753; // size of board x
+    private int height = 644; // size of board y
+    private int threads = 0; // number of threads, 0 means default of SimController
+    private final Parameters parameters = new Parameters(); // parameters of simulation
+    private File record = null; // file to record trajectories (of measured iterations), null if not recording
+    private File scenario = null; // scenario to load instead of default one (board size is taken from it), null if none
+    private File checkpointIn = null; // checkpoint to start from instead of default scenario, null if none
+    private File checkpointOut = null; // file to save checkpoint after run, null if not saving
+    private int metricsPort = -1; // port of metrics endpoint (see MetricsServer), -1 if disabled
+
+    /**
+     * Main
+     *
+     * @param args - program arguments
+     */
+    public static void main(String[] args) {
+        HeadlessSimulation simulation = new HeadlessSimulation();
+        simulation.parseArguments(args);
+        simulation.run();
+    }
+
+    /**
+     * Reads options from program arguments
+     *
+     * @param args - program arguments
+     */
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value of option " + args[i]);
+            }
+            switch (args[i]) {
+                case "--ticks":
+                    ticks = Integer.parseInt(args[++i]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+                case "--width":
+                    width = Integer.parseInt(args[++i]);
+                    break;
+                case "--height":
+                    height = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    parameters.seed = Long.parseLong(args[++i]);
+                    break;
+                case "--record":
+                    record = new File(args[++i]);
+                    break;
+                case "--scenario":
+                    scenario = new File(args[++i]);
+                    break;
+                case "--checkpoint-in":
+                    checkpointIn = new File(args[++i]);
+                    break;
+                case "--checkpoint-out":
+                    checkpointOut = new File(args[++i]);
+                    break;
+                case "--fast-math":
+                    parameters.fastMathError = Double.parseDouble(args[++i]);
+                    parameters.fastMath = true;
+                    break;
+                case "--continuous":
+                    parameters.continuousPositions = Integer.parseInt(args[++i]) != 0;
+                    break;
+                case "--skin":
+                    parameters.neighborSkin = Integer.parseInt(args[++i]);
+                    break;
+                case "--metrics-port":
+                    metricsPort = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+    }
+
+    /**
+     * Builds scenario, runs simulation and prints throughput
+     */
+    private void run() {
+        SimController controller = new SimController((threads > 0) ? threads : SimController.defaultThreadsCount(), parameters);
+        if (checkpointIn != null) {
+            try {
+                controller.restoreCheckpoint(checkpointIn);
+            } catch (IOException e) {
+                e.printStackTrace();
+                controller.shutdown();
+                return;
+            }
+        } else if (scenario != null) {
+            try {
+                controller.loadScenario(scenario);
+            } catch (IOException e) {
+                e.printStackTrace();
+                controller.shutdown();
+                return;
+            }
+        } else {
+            controller.initialize(width, height);
+            buildDefaultScenario(controller, width, height);
+        }
+        controller.prepareSimulation();
+        MetricsServer metricsServer = null;
+        if (metricsPort >= 0) {
+            controller.getMetrics().register("headless");
+            try {
+                metricsServer = new MetricsServer(metricsPort, controller.getMetrics());
+                System.out.println("Metrics: http://localhost:" + metricsServer.getPort() + "/metrics");
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        for (int i = 0; i < warmup; i++) {
+            controller.step();
+        }
+        if (record != null) {
+            try {
+                controller.startRecording(record);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            controller.step();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (checkpointOut != null) {
+            try {
+                controller.saveCheckpoint(checkpointOut);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        controller.shutdown();
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
+
+        double seconds = elapsed / 1e9;
+        System.out.println("Agents: " + controller.getBoard().getAgents().size());
+        System.out.println("Board: " + controller.getBoard().getSizeX() + " x " + controller.getBoard().getSizeY()
+                + ", memory of fields: " + controller.getBoard().getFieldsMemory() / 1024 + " KiB");
+        System.out.println("Ticks: " + ticks + ", time: " + String.format("%.3f", seconds) + " s");
+        System.out.println("Ticks per second: " + String.format("%.2f", ticks / seconds));
+        System.out.println("State checksum: " + Long.toHexString(checksum(controller.getBoard().getAgentsStore())));
+        printPhases(controller.getMetrics());
+    }
+
+    /**
+     * Prints share of phases in time of all ticks (with warmup)
+     *
+     * @param metrics - metrics of simulation
+     */
+    private static void printPhases(TickMetrics metrics) {
+        for (TickMetrics.Phase phase : TickMetrics.Phase.values()) {
+            double seconds = metrics.getPhaseSeconds(phase);
+            System.out.println(String.format("  %-20s %9.3f s %6.1f %%", phase.name().toLowerCase(), seconds,
+                    (metrics.getTickSeconds() > 0) ? 100 * seconds / metrics.getTickSeconds() : 0));
+        }
+        System.out.println("Neighbors examined per agent and tick: " + String.format("%.1f",
+                metrics.getNeighborsExamined() / (double) Math.max(metrics.getTicks() * metrics.getAgents(), 1)));
+        System.out.println("Blocked moves: " + metrics.getBlockedMoves() + ", allocated bytes per tick: "
+                + metrics.getAllocatedBytes() / Math.max(metrics.getTicks(), 1));
+    }
+
+    /**
+     * Hash of positions and velocities of all agents, equal for runs with the same seed and scenario
+     *
+     * @param store - state of agents
+     * @return hash
+     */
+    static long checksum(AgentsStore store) {
+        long hash = 17;
+        for (int i = 0; i < store.size(); i++) {
+            hash = hash * 31 + Double.doubleToLongBits(store.getPositionX(i));
+            hash = hash * 31 + Double.doubleToLongBits(store.getPositionY(i));
+            hash = hash * 31 + Double.doubleToLongBits(store.getVelocityX(i));
+            hash = hash * 31 + Double.doubleToLongBits(store.getVelocityY(i));
+        }
+        return hash;
+    }
+
+    /**
+     * Creates standard scenario: crowd in the bottom part of board, police cordon in the middle, desired point on the top
+     *
+     * @param controller - controller with initialized board
+     * @param width      - size of board x
+     * @param height     - size of board y
+     */
+    public static void buildDefaultScenario(SimController controller, int width, int height) {
+        controller.getParameters().desiredPoint = new Pair<>(width / 2, height / 20);
+        controller.generateObjects("police", new Pair<>(width / 10, height * 4 / 10), new Pair<>(width * 9 / 10, height * 4 / 10 + 6 * controller.getParameters().agentRadiusGUI));
+        controller.generateObjects("crowd", new Pair<>(width / 10, height * 6 / 10), new Pair<>(width * 9 / 10, height * 9 / 10));
+    }
+}
@@ -0,0 +1,249 @@
+package controller;
+
+import agents.AgentsStates;
+import agents.AgentsStore;
+import agents.Board;
+import agents.Policeman;
+import org.apache.commons.math3.util.Pair;
+import simulation.Parameters;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Parameter sweep - runs many independent simulations of scenario (see ScenarioLoader) concurrently,
+ * every simulation in single thread of its own worker, and writes summary metrics of every run as CSV
+ * <p/>
+ * Runs are all combinations of varied parameters, every combination repeated with different seeds.
+ * Usage: ParameterSweep --scenario FILE [--ticks N] [--replicates N] [--seed N] [--workers N] [--out FILE]
+ * [--vary DIRECTIVE=VALUES]... where values are separated by ',' and arguments of value by space,
+ * e.g. --vary view=5,10,20 --vary "mix=15 5,30 10"
+ */
+public class ParameterSweep {
+    private File scenario = null; // scenario file
+    private int ticks = 1000; // number of iterations of every run
+    private int replicates = 1; // number of runs of every combination of parameters
+    private long seed = 1; // seed of first replicate (if seed is not varied)
+    private int workers = Runtime.getRuntime().availableProcessors(); // number of concurrent simulations
+    private File out = null; // output file, null means standard output
+    private final Map<String, String[]> variations = new LinkedHashMap<>(); // varied directives and their values
+
+    /**
+     * Main
+     *
+     * @param args - program arguments
+     */
+    public static void main(String[] args) {
+        ParameterSweep sweep = new ParameterSweep();
+        sweep.parseArguments(args);
+        try {
+            sweep.run();
+        } catch (FileNotFoundException | InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads options from program arguments
+     *
+     * @param args - program arguments
+     */
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value of option " + args[i]);
+            }
+            switch (args[i]) {
+                case "--scenario":
+                    scenario = new File(args[++i]);
+                    break;
+                case "--ticks":
+                    ticks = Integer.parseInt(args[++i]);
+                    break;
+                case "--replicates":
+                    replicates = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--workers":
+                    workers = Integer.parseInt(args[++i]);
+                    break;
+                case "--out":
+                    out = new File(args[++i]);
+                    break;
+                case "--vary":
+                    String[] variation = args[++i].split("=", 2);
+                    if (variation.length != 2) {
+                        throw new IllegalArgumentException("Expected DIRECTIVE=VALUES: " + args[i]);
+                    }
+                    variations.put(variation[0], variation[1].split(","));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (scenario == null) {
+            throw new IllegalArgumentException("Missing option --scenario");
+        }
+    }
+
+    /**
+     * Runs all simulations and writes their metrics (in order of runs)
+     *
+     * @throws FileNotFoundException if output file cannot be created
+     * @throws InterruptedException  if interrupted while waiting for runs
+     */
+    private void run() throws FileNotFoundException, InterruptedException {
+        List<Map<String, String>> runs = combinations();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(workers, 1));
+        List<Future<String>> results = new ArrayList<>(runs.size());
+        long start = System.nanoTime();
+        for (int i = 0; i < runs.size(); i++) {
+            results.add(executor.submit(new Run(i, runs.get(i))));
+        }
+        executor.shutdown();
+
+        PrintStream output = (out != null) ? new PrintStream(out) : System.out;
+        StringBuilder header = new StringBuilder("run");
+        for (String directive : variations.keySet()) {
+            header.append(',').append(directive);
+        }
+        output.println(header.append(",seed,agents,policemen,ticks,time_s,ticks_per_s,mean_distance_start,mean_distance_end,mean_speed,pushed_policemen"));
+        int failed = 0;
+        for (Future<String> result : results) {
+            try {
+                output.println(result.get());
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+                failed++;
+            }
+        }
+        if (output != System.out) {
+            output.close();
+        }
+        double hours = (System.nanoTime() - start) / 1e9 / 3600;
+        System.err.println("Runs: " + runs.size() + " (failed: " + failed + "), workers: " + workers
+                + ", simulations per hour: " + String.format("%.1f", (runs.size() - failed) / hours));
+    }
+
+    /**
+     * @return overridden directives of every run - all combinations of varied values, each with every replicate's seed
+     */
+    private List<Map<String, String>> combinations() {
+        List<Map<String, String>> runs = new ArrayList<>();
+        List<String> directives = new ArrayList<>(variations.keySet());
+        int[] indexes = new int[directives.size()];
+        while (true) {
+            for (int r = 0; r < replicates; r++) {
+                Map<String, String> run = new LinkedHashMap<>();
+                for (int d = 0; d < directives.size(); d++) {
+                    run.put(directives.get(d), variations.get(directives.get(d))[indexes[d]]);
+                }
+                long base = run.containsKey("seed") ? Long.parseLong(run.get("seed").trim()) : seed;
+                run.put("seed", Long.toString(base + r));
+                runs.add(run);
+            }
+            int d = 0; // next combination (mixed radix counter)
+            while (d < indexes.length && ++indexes[d] == variations.get(directives.get(d)).length) {
+                indexes[d++] = 0;
+            }
+            if (d == indexes.length) {
+                return runs;
+            }
+        }
+    }
+
+    /**
+     * Single simulation, returns row of CSV
+     */
+    private final class Run implements Callable<String> {
+        private final int number; // number of run
+        private final Map<String, String> overrides; // overridden directives
+
+        Run(int number, Map<String, String> overrides) {
+            this.number = number;
+            this.overrides = overrides;
+        }
+
+        @Override
+        public String call() throws Exception {
+            SimController controller = new SimController(1, new Parameters());
+            try {
+                ScenarioLoader loader = new ScenarioLoader(controller);
+                for (Map.Entry<String, String> entry : overrides.entrySet()) {
+                    loader.override(entry.getKey(), entry.getValue());
+                }
+                loader.load(scenario);
+                controller.prepareSimulation();
+                Board board = controller.getBoard();
+                double distanceStart = meanDistance(board);
+                long start = System.nanoTime();
+                for (int i = 0; i < ticks; i++) {
+                    controller.step();
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                StringBuilder row = new StringBuilder().append(number);
+                for (String directive : variations.keySet()) {
+                    String value = overrides.get(directive);
+                    row.append(',').append(value.contains(" ") ? '"' + value + '"' : value);
+                }
+                int pushed = 0;
+                for (Policeman pol : board.getPolicemen()) {
+                    if (pol.getState() == AgentsStates.IS_PUSHED) {
+                        pushed++;
+                    }
+                }
+                return row.append(',').append(controller.getParameters().seed)
+                        .append(',').append(board.getAgents().size())
+                        .append(',').append(board.getPolicemen().size())
+                        .append(',').append(ticks)
+                        .append(',').append(String.format("%.3f", seconds))
+                        .append(',').append(String.format("%.1f", ticks / seconds))
+                        .append(',').append(String.format("%.3f", distanceStart))
+                        .append(',').append(String.format("%.3f", meanDistance(board)))
+                        .append(',').append(String.format("%.4f", meanSpeed(board.getAgentsStore())))
+                        .append(',').append(pushed).toString();
+            } finally {
+                controller.shutdown();
+            }
+        }
+    }
+
+    /**
+     * @param board - simulation board
+     * @return mean distance of agents (without policemen) to desired point
+     */
+    private static double meanDistance(Board board) {
+        Pair<Integer, Integer> desired = board.getParameters().desiredPoint;
+        AgentsStore store = board.getAgentsStore();
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < store.size(); i++) {
+            if (!(board.getAgents().get(i) instanceof Policeman)) {
+                sum += Math.hypot(store.getPositionX(i) - desired.getFirst(), store.getPositionY(i) - desired.getSecond());
+                count++;
+            }
+        }
+        return (count > 0) ? sum / count : 0;
+    }
+
+    /**
+     * @param store - state of agents
+     * @return mean speed of all agents
+     */
+    private static double meanSpeed(AgentsStore store) {
+        double sum = 0;
+        for (int i = 0; i < store.size(); i++) {
+            sum += Math.hypot(store.getVelocityX(i), store.getVelocityY(i));
+        }
+        return (store.size() > 0) ? sum / store.size() : 0;
+    }
+}
@@ -0,0 +1,269 @@
+package controller;
+
+import org.apache.commons.math3.util.Pair;
+import simulation.Parameters;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loader of text scenario files - builds board directly, line by line, without GUI
+ * <p/>
+ * Every line is a directive followed by integer (or decimal) arguments, '#' starts comment:
+ * <pre>
+ * seed N                          - seed of random generators (before board)
+ * radius R                        - agent radius (before board)
+ * sparsity N                      - distance between generated agents
+ * mix MODERATE TROUBLEMAKERS      - percents of moderate active agents and trouble makers in crowds
+ * velocity PASSIVE MODERATE TROUBLE - max velocities of agents
+ * view R                          - view range of agents
+ * fps N                           - frames per second of GUI
+ * fastmath ERROR                  - tables of forces with given max relative error instead of exact forces, 0 disables
+ * continuous 0|1                  - exact (continuous) positions of agents instead of board fields
+ * skin N                          - margin of neighbors lists reused in next iterations, 0 disables
+ * board X Y                       - size of board, has to precede objects
+ * desired X Y                     - desired point of crowd
+ * obstacle X1 Y1 X2 Y2            - obstacle in rectangle
+ * police X1 Y1 X2 Y2              - police cordon (rows of policemen) in rectangle
+ * crowd X1 Y1 X2 Y2 [MODERATE TROUBLEMAKERS] - crowd in rectangle, optionally with its own type mix
+ * </pre>
+ * Objects are generated in order of lines, so the same file gives the same board.
+ * Parameter directives (all but board and objects) can be overridden, e.g. to sweep over values of parameter.
+ */
+public class ScenarioLoader {
+    private static final List<String> PARAMETER_DIRECTIVES = Arrays.asList("seed", "radius", "sparsity", "mix", "velocity", "view", "fps", "fastmath", "continuous", "skin", "desired");
+
+    private final SimController controller; // controller building board
+    private final Parameters parameters; // parameters of simulation, set by directives
+    private boolean boardCreated = false; // if board directive was read
+    private int lineNumber = 0; // number of current line
+    private final Map<String, String[]> overrides = new LinkedHashMap<>(); // overridden directives (with names)
+
+    /**
+     * @param controller - controller of simulation, its board is replaced by scenario
+     */
+    public ScenarioLoader(SimController controller) {
+        this.controller = controller;
+        parameters = controller.getParameters();
+    }
+
+    /**
+     * Overrides parameter directive - it is executed before scenario and its lines in scenario use given arguments
+     *
+     * @param directive - name of parameter directive
+     * @param arguments - arguments separated by whitespace
+     * @throws IllegalArgumentException if directive is not a parameter directive
+     */
+    public void override(String directive, String arguments) {
+        if (!PARAMETER_DIRECTIVES.contains(directive)) {
+            throw new IllegalArgumentException("Not a parameter directive: " + directive);
+        }
+        overrides.put(directive, (directive + " " + arguments.trim()).split("\\s+"));
+    }
+
+    /**
+     * Loads scenario from file, simulation is not prepared afterwards
+     *
+     * @param file - scenario file
+     * @throws IOException if file cannot be read or contains errors
+     */
+    public void load(File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            load(reader);
+        }
+    }
+
+    /**
+     * Loads scenario from reader, simulation is not prepared afterwards
+     *
+     * @param reader - scenario text
+     * @throws IOException if scenario cannot be read or contains errors
+     */
+    public void load(BufferedReader reader) throws IOException {
+        boardCreated = false;
+        lineNumber = 0;
+        for (String[] tokens : overrides.values()) {
+            parseLine(tokens);
+        }
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            if (comment != -1) {
+                line = line.substring(0, comment);
+            }
+            line = line.trim();
+            if (!line.isEmpty()) {
+                String[] tokens = line.split("\\s+");
+                parseLine(overrides.containsKey(tokens[0]) ? overrides.get(tokens[0]) : tokens);
+            }
+        }
+        if (!boardCreated) {
+            throw error("missing board directive");
+        }
+    }
+
+    /**
+     * Executes single directive
+     *
+     * @param tokens - directive and its arguments
+     * @throws IOException if directive is unknown or has wrong arguments
+     */
+    private void parseLine(String[] tokens) throws IOException {
+        switch (tokens[0]) {
+            case "seed":
+                checkArguments(tokens, 1);
+                checkBoard(false);
+                try {
+                    parameters.seed = Long.parseLong(tokens[1]);
+                } catch (NumberFormatException e) {
+                    throw error("not an integer: " + tokens[1]);
+                }
+                break;
+            case "radius":
+                checkArguments(tokens, 1);
+                checkBoard(false);
+                parameters.agentRadius = parameters.agentRadiusGUI = toInt(tokens[1]);
+                break;
+            case "sparsity":
+                checkArguments(tokens, 1);
+                parameters.crowdSparsity = toInt(tokens[1]);
+                break;
+            case "mix":
+                checkArguments(tokens, 2);
+                parameters.partOfModerate = toInt(tokens[1]);
+                parameters.partOfTroubleMakers = toInt(tokens[2]);
+                break;
+            case "velocity":
+                checkArguments(tokens, 3);
+                parameters.maxVelocityPassive = toDouble(tokens[1]);
+                parameters.maxVelocityModerate = toDouble(tokens[2]);
+                parameters.maxVelocityTrouble = toDouble(tokens[3]);
+                break;
+            case "view":
+                checkArguments(tokens, 1);
+                parameters.viewRange = toInt(tokens[1]);
+                break;
+            case "fastmath":
+                checkArguments(tokens, 1);
+                double error = toDouble(tokens[1]);
+                parameters.fastMath = error > 0;
+                if (parameters.fastMath) {
+                    parameters.fastMathError = error;
+                }
+                break;
+            case "continuous":
+                checkArguments(tokens, 1);
+                parameters.continuousPositions = toInt(tokens[1]) != 0;
+                break;
+            case "skin":
+                checkArguments(tokens, 1);
+                parameters.neighborSkin = toInt(tokens[1]);
+                break;
+            case "fps":
+                checkArguments(tokens, 1);
+                parameters.fps = toInt(tokens[1]);
+                break;
+            case "board":
+                checkArguments(tokens, 2);
+                checkBoard(false);
+                controller.initialize(toInt(tokens[1]), toInt(tokens[2]));
+                boardCreated = true;
+                break;
+            case "desired":
+                checkArguments(tokens, 2);
+                parameters.desiredPoint = new Pair<>(toInt(tokens[1]), toInt(tokens[2]));
+                break;
+            case "obstacle":
+                checkArguments(tokens, 4);
+                checkBoard(true);
+                controller.generateObjects("obstacles", corner(tokens, 1), corner(tokens, 3));
+                break;
+            case "police":
+                checkArguments(tokens, 4);
+                checkBoard(true);
+                controller.generateObjects("police", corner(tokens, 1), corner(tokens, 3));
+                break;
+            case "crowd":
+                checkArguments(tokens, 4, 6);
+                checkBoard(true);
+                if (tokens.length == 5) {
+                    controller.generateObjects("crowd", corner(tokens, 1), corner(tokens, 3));
+                } else {
+                    generateCrowdWithMix(tokens);
+                }
+                break;
+            default:
+                throw error("unknown directive " + tokens[0]);
+        }
+    }
+
+    /**
+     * Generates crowd with its own type mix, global mix is kept
+     *
+     * @param tokens - crowd directive with 6 arguments
+     * @throws IOException if arguments are not numbers
+     */
+    private void generateCrowdWithMix(String[] tokens) throws IOException {
+        int moderate = parameters.partOfModerate, troubleMakers = parameters.partOfTroubleMakers;
+        parameters.partOfModerate = toInt(tokens[5]);
+        parameters.partOfTroubleMakers = toInt(tokens[6]);
+        try {
+            controller.generateObjects("crowd", corner(tokens, 1), corner(tokens, 3));
+        } finally {
+            parameters.partOfModerate = moderate;
+            parameters.partOfTroubleMakers = troubleMakers;
+        }
+    }
+
+    private Pair<Integer, Integer> corner(String[] tokens, int from) throws IOException {
+        return new Pair<>(toInt(tokens[from]), toInt(tokens[from + 1]));
+    }
+
+    /**
+     * @param tokens - directive and its arguments
+     * @param counts - allowed numbers of arguments
+     * @throws IOException if number of arguments is not allowed
+     */
+    private void checkArguments(String[] tokens, int... counts) throws IOException {
+        for (int count : counts) {
+            if (tokens.length - 1 == count) {
+                return;
+            }
+        }
+        throw error("wrong number of arguments of " + tokens[0]);
+    }
+
+    /**
+     * @param created - true if board has to exist, false if it cannot exist yet
+     * @throws IOException if directive is in wrong place
+     */
+    private void checkBoard(boolean created) throws IOException {
+        if (created != boardCreated) {
+            throw error(created ? "board directive has to precede objects" : "directive has to precede board directive");
+        }
+    }
+
+    private int toInt(String token) throws IOException {
+        try {
+            return Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            throw error("not an integer: " + token);
+        }
+    }
+
+    private double toDouble(String token) throws IOException {
+        try {
+            return Double.parseDouble(token);
+        } catch (NumberFormatException e) {
+            throw error("not a number: " + token);
+        }
+    }
+
+    private IOException error(String message) {
+        return new IOException("Scenario line " + lineNumber + ": " + message);
+    }
+}
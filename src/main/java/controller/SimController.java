@@ -2,35 +2,90 @@ package controller;
 
 import agents.*;
 import graphics.CrowdFrame;
+import metrics.TickMetrics;
+import metrics.TickMetrics.Phase;
 import org.apache.commons.math3.util.Pair;
+import recording.TrajectoryReader;
+import recording.TrajectoryRecorder;
+import simulation.Constants;
 import simulation.Parameters;
 import utils.Utils;
 
-import javax.swing.*;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Application controller
+ * <p/>
+ * Simulation runs on its own thread (engine), GUI draws snapshots of board published after every iteration
+ * (see SnapshotExchange), so frame rate of GUI does not limit simulation.
+ * In replay mode engine publishes frames of recording instead of simulating.
  */
-public class SimController implements ActionListener {
-    private final int num = (Runtime.getRuntime().availableProcessors() - 1 > 0) ? Runtime.getRuntime().availableProcessors() - 1 : 1;  // number of available jvm's threads
-    private final ExecutorService executorsPool = Executors.newFixedThreadPool(num); // executors
-    private final Board board = new Board(); // board
+public class SimController {
+    private static final int MIN_CHUNK = 16; // min number of agents updated by single task
+    private static final int CHUNKS_PER_THREAD = 8; // number of tasks per thread (before work stealing)
+
+    private final int num;  // number of threads
+    private final ForkJoinPool executorsPool; // executors (work stealing), null if simulation runs in single thread
+    private final Board board; // board
     private CrowdFrame mainFrame = null; // application's main frame
 
     private boolean running = false; // if simulation is running (true even if paused, true means, that simulation was started and not reset)
-    private boolean simulationRunning = false; // if simulation is running - pause = false
+    private volatile boolean simulationRunning = false; // if simulation is running - pause = false
 
-    private LinkedList<BaseAgent> agents; // all existing agents
-    private LinkedList<AgentsTask> tasks; // list of tasks for executors
-    private Timer timer; // swing's timer (fps)
+    private ArrayList<BaseAgent> agents; // all existing agents
+    private StripMover mover; // parallel movement of agents
+    private final PoliceForcePropagation policeForces = new PoliceForcePropagation(); // propagation of forces in police cordon
+    private Thread engine; // thread running iterations
+    private long iteration = 0; // number of iterations done
+    private final SnapshotExchange snapshots = new SnapshotExchange(); // snapshots of board for GUI
+    private TrajectoryRecorder recorder; // recorder of trajectories, null if not recording
+    private TrajectoryReader replay; // replayed recording, null if not in replay mode
+    private volatile long replayFrame = -1; // current frame of replay
+    private final TickMetrics metrics = new TickMetrics(); // timers and counters of iterations
+    private final Object parametersLock = new Object(); // guards changedParameters and their applying
+    private volatile Parameters changedParameters = null; // parameters changed by GUI, not applied yet (see changeParameters)
+
+    /**
+     * Creates controller using all but one available processors
+     */
+    public SimController() {
+        this(defaultThreadsCount());
+    }
+
+    /**
+     * @return default number of threads - all but one available processors
+     */
+    public static int defaultThreadsCount() {
+        return (Runtime.getRuntime().availableProcessors() - 1 > 0) ? Runtime.getRuntime().availableProcessors() - 1 : 1;
+    }
+
+    /**
+     * Creates controller with default parameters
+     *
+     * @param threads - number of threads used by simulation
+     */
+    public SimController(int threads) {
+        this(threads, new Parameters());
+    }
+
+    /**
+     * Creates controller. With one thread iterations are done entirely in calling thread (without executors),
+     * so many single threaded simulations can run concurrently (see ParameterSweep).
+     *
+     * @param threads    - number of threads used by simulation
+     * @param parameters - parameters of simulation
+     */
+    public SimController(int threads, Parameters parameters) {
+        num = (threads > 0) ? threads : 1;
+        executorsPool = (num > 1) ? new ForkJoinPool(num, metrics.workersFactory(), null, false) : null;
+        board = new Board(parameters);
+    }
 
     public boolean isSimulationRunning() {
         return simulationRunning;
@@ -48,6 +103,62 @@ public class SimController implements ActionListener {
         return board;
     }
 
+    public Parameters getParameters() {
+        return board.getParameters();
+    }
+
+    /**
+     * Returns copy of parameters (with changes which are not applied yet) to be changed and passed to changeParameters,
+     * so GUI never writes parameters read by running simulation
+     *
+     * @return copy of parameters
+     */
+    public Parameters copyParameters() {
+        synchronized (parametersLock) {
+            return new Parameters((changedParameters != null) ? changedParameters : board.getParameters());
+        }
+    }
+
+    /**
+     * Changes parameters of simulation. Running engine applies them before its next iteration (or replayed frame),
+     * so all agents of iteration see the same values; otherwise they are applied at once.
+     *
+     * @param changed - changed copy of parameters (see copyParameters)
+     */
+    public void changeParameters(Parameters changed) {
+        synchronized (parametersLock) {
+            changedParameters = changed;
+        }
+        if (!simulationRunning) {
+            applyChangedParameters();
+        }
+    }
+
+    /**
+     * Copies parameters changed by changeParameters to parameters of board (shared by all objects of simulation)
+     */
+    private void applyChangedParameters() {
+        synchronized (parametersLock) {
+            if (changedParameters != null) {
+                board.getParameters().set(changedParameters);
+                changedParameters = null;
+            }
+        }
+    }
+
+    public TickMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns newest snapshot of board, has to be called from GUI thread only
+     *
+     * @return snapshot or null if nothing was published yet
+     */
+    public BoardSnapshot getSnapshot() {
+        return snapshots.latest();
+    }
+
     /**
      * Initializes board
      *
@@ -56,13 +167,29 @@ public class SimController implements ActionListener {
      */
     public void initialize(int x, int y) {
         board.initialize(x, y);
+        publishSnapshot();
+    }
+
+    /**
+     * Starts engine thread
+     */
+    private void startEngine() {
+        if (simulationRunning) {
+            return;
+        }
+        simulationRunning = true;
+        engine = new Thread(new Engine(), "simulation-engine");
+        engine.setDaemon(true);
+        engine.start();
     }
 
     /**
-     * Creates new instance of Timer with fps from Parameters class
+     * Publishes snapshot of board for GUI (skipped if there is no GUI)
      */
-    private void createTimer() {
-        timer = new Timer(1000 / Parameters.fps, this);
+    private void publishSnapshot() {
+        if (mainFrame != null) {
+            snapshots.publish(board, iteration);
+        }
     }
 
     /**
@@ -72,13 +199,24 @@ public class SimController implements ActionListener {
      * @param constraintRD - right bottom
      */
     public void generateObjects(Pair<Integer, Integer> constraintLU, Pair<Integer, Integer> constraintRD) {
+        generateObjects(getAddingObjectParameter(), constraintLU, constraintRD);
+    }
+
+    /**
+     * Generates objects of given kind - agents (different types) or obstacles
+     *
+     * @param kind         - kind of objects: "obstacles", "crowd" or "police"
+     * @param constraintLU - left upper corner of rectangle (area to insert objects)
+     * @param constraintRD - right bottom
+     */
+    public void generateObjects(String kind, Pair<Integer, Integer> constraintLU, Pair<Integer, Integer> constraintRD) {
         if (board.getAgents().size() == 0) {
             rewriteAgentRadiusFromGUI();
         }
         Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> temp = Utils.makeRectangleProper(constraintLU, constraintRD);
         constraintLU = temp.getFirst();
         constraintRD = temp.getSecond();
-        switch (getAddingObjectParameter()) {
+        switch (kind) {
             case "obstacles":
                 SimulationObjectsGenerator.generateObstaclesAndUpdateBoard(board, constraintLU, constraintRD);
                 break;
@@ -89,22 +227,33 @@ public class SimController implements ActionListener {
                 SimulationObjectsGenerator.generatePolicemenInRows(board, constraintLU, constraintRD);
                 break;
         }
+        publishSnapshot();
     }
 
     /**
-     * Pauses simulation (sets simulationRunning false)
+     * Pauses simulation (sets simulationRunning false) and waits until engine finishes current iteration
      */
     public void pauseSimulation() {
         simulationRunning = false;
+        if (engine != null && engine != Thread.currentThread()) {
+            LockSupport.unpark(engine);
+            try {
+                engine.join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            engine = null;
+        }
+        if (mainFrame != null) {
+            mainFrame.getLeftPanel().repaint();
+        }
     }
 
     /**
-     * Resumes timer (sets simulationRunning true)
+     * Resumes engine (sets simulationRunning true)
      */
     public void resumeSimulation() {
-        createTimer();
-        simulationRunning = true;
-        timer.start();
+        startEngine();
     }
 
     /**
@@ -112,100 +261,165 @@ public class SimController implements ActionListener {
      */
     public void resetSimulation() {
         pauseSimulation();
+        stopRecording();
+        closeReplay();
         board.initialize(board.getSizeX(), board.getSizeY());
         running = false;
+        iteration = 0;
+        publishSnapshot();
         if (mainFrame != null) {
             mainFrame.getLeftPanel().repaint();
         }
     }
 
     /**
-     * Prepares list of tasks
-     *
-     * @param agents - list of existing agents
-     * @return list of tasks
+     * Rewrites agents' radius from GUI
      */
-    private LinkedList<AgentsTask> prepareTasks(LinkedList<BaseAgent> agents) {
-        LinkedList<AgentsTask> tasks = new LinkedList<>();
-        LinkedList<BaseAgent>[] agentsForTasks = new LinkedList[num];
+    private void rewriteAgentRadiusFromGUI() {
+        board.getParameters().agentRadius = board.getParameters().agentRadiusGUI;
+    }
 
-        for (int i = 0; i < num; i++) {
-            agentsForTasks[i] = new LinkedList<>();
+    /**
+     * Single iteration of simulation (without repainting)
+     */
+    public void step() {
+        if (changedParameters != null) {
+            applyChangedParameters();
         }
-        int count = 0;
+        metrics.startTick();
+        /* Multi threads (sweeps), considering forces used on policemen */
+        policeForces.propagate(board.getPolicemen(), executorsPool);
+        metrics.endPhase(Phase.POLICE_PROPAGATION);
         for (BaseAgent agent : agents) {
-            agentsForTasks[count++ % num].add(agent);
-        }
-        for (int i = 0; i < num; i++) {
-            tasks.add(new AgentsTask(agentsForTasks[i]));
+            agent.applyPushForces();
         }
-        return tasks;
-    }
+        metrics.endPhase(Phase.PUSH_FORCES);
 
-    /**
-     * Function controls forces used on policemen
-     * <p/>
-     * Function considers every policeman on which any force was used (policeman can "push" other policeman too, see considerForces in Policeman class)
-     */
-    private void considerPolicemen() {
-        LinkedList<Policeman> policemenToConsider = new LinkedList<>();
-        LinkedHashSet<Policeman> considered = new LinkedHashSet<>();
-        for (Policeman pol : board.getPolicemen()) {
-            if (pol.getState() == AgentsStates.IS_PUSHED) {
-                considered.add(pol);
-                Policeman toAdd = pol.considerForces();
-                if (toAdd != null && !considered.contains(toAdd)) {
-                    policemenToConsider.add(toAdd);
-                }
+        /* Multi threads, updating agents state */
+        board.getAgentsStore().saveVelocities();
+        board.updateNeighborsIndex();
+        if (executorsPool == null) {
+            for (int i = 0; i < agents.size(); i++) {
+                agents.get(i).prepareNeighbors();
             }
-        }
-        while (!policemenToConsider.isEmpty()) {
-            Policeman toConsider = policemenToConsider.removeFirst();
-            considered.add(toConsider);
-            Policeman toAdd = toConsider.considerForces();
-            if (toAdd != null && !considered.contains(toAdd)) {
-                policemenToConsider.add(toAdd);
+            for (int i = 0; i < agents.size(); i++) {
+                agents.get(i).updateStateFromNeighbors();
             }
+        } else {
+            int threshold = Math.max(MIN_CHUNK, agents.size() / (num * CHUNKS_PER_THREAD));
+            executorsPool.invoke(new AgentsTask(0, agents.size(), threshold, true));
+            executorsPool.invoke(new AgentsTask(0, agents.size(), threshold, false));
+        }
+        metrics.endPhase(Phase.UPDATE_STATE);
+
+        /* Multi threads (strips of board), changing agents position */
+        mover.move(agents, executorsPool);
+        iteration++;
+        metrics.endPhase(Phase.MOVE);
+
+        if (recorder != null) {
+            recordFrame();
         }
+        metrics.endPhase(Phase.RECORD);
+        metrics.endTick(agents);
     }
 
     /**
-     * Rewrites agents' radius from GUI
+     * Starts recording trajectories of agents, current state is recorded as first frame.
+     * Has to be called when simulation is not running (or paused) and all objects are generated.
+     *
+     * @param file - output file
+     * @throws IOException if file cannot be written
      */
-    private void rewriteAgentRadiusFromGUI() {
-        Parameters.agentRadius = Parameters.agentRadiusGUI;
+    public void startRecording(File file) throws IOException {
+        stopRecording();
+        recorder = new TrajectoryRecorder(file, board, Constants.recordingKeyframeInterval);
+        recordFrame();
     }
 
     /**
-     * Single iteration of simulation
-     *
-     * @param event - event (not used, may be null)
+     * Stops recording trajectories (if recording) and closes file
      */
-    public void actionPerformed(ActionEvent event) {
-        /* One thread, considering forces */
-        considerPolicemen();
-        for (BaseAgent agent : agents) {
-            agent.applyPushForces();
+    public void stopRecording() {
+        if (recorder != null) {
+            try {
+                recorder.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            recorder = null;
         }
+    }
 
-        /* Multi threads, updating agents state */
+    /**
+     * Records current state of agents, stops recording if it fails
+     */
+    private void recordFrame() {
         try {
-            executorsPool.invokeAll(tasks);
-        } catch (InterruptedException e) {
+            recorder.record(iteration);
+        } catch (IOException e) {
             e.printStackTrace();
+            stopRecording();
         }
+    }
 
-        /* One thread, changing agents position, repainting */
-        for (BaseAgent agent : agents) {
-            agent.changePosition();
+    /**
+     * Saves checkpoint of whole simulation state (see BoardCheckpoint), engine is paused while saving
+     *
+     * @param file - output file
+     * @throws IOException if file cannot be written
+     */
+    public void saveCheckpoint(File file) throws IOException {
+        boolean wasRunning = simulationRunning;
+        pauseSimulation();
+        try {
+            new BoardCheckpoint(iteration, running).save(board, file);
+        } finally {
+            if (wasRunning) {
+                startEngine();
+            }
         }
+    }
 
+    /**
+     * Restores simulation state from checkpoint (see BoardCheckpoint), simulation is paused afterwards
+     * and continues exactly as the saved one would after Start
+     *
+     * @param file - checkpoint file
+     * @throws IOException if file cannot be read
+     */
+    public void restoreCheckpoint(File file) throws IOException {
+        pauseSimulation();
+        stopRecording();
+        closeReplay();
+        BoardCheckpoint checkpoint = BoardCheckpoint.restore(board, file);
+        iteration = checkpoint.getIteration();
+        running = false;
+        if (checkpoint.isStarted()) {
+            prepareSimulation();
+        }
+        publishSnapshot();
         if (mainFrame != null) {
             mainFrame.getLeftPanel().repaint();
         }
+    }
 
-        if (!simulationRunning) {
-            timer.stop();
+    /**
+     * Destroys current simulation and builds board from scenario file (see ScenarioLoader),
+     * simulation is not started
+     *
+     * @param file - scenario file
+     * @throws IOException if file cannot be read or contains errors
+     */
+    public void loadScenario(File file) throws IOException {
+        pauseSimulation();
+        stopRecording();
+        closeReplay();
+        running = false;
+        iteration = 0;
+        new ScenarioLoader(this).load(file);
+        if (mainFrame != null) {
+            mainFrame.getLeftPanel().repaint();
         }
     }
 
@@ -213,14 +427,34 @@ public class SimController implements ActionListener {
      * Starts simulation
      */
     public void simulate() {
-        createTimer();
-        simulationRunning = true;
+        if (replay != null) {
+            startEngine();
+            return;
+        }
+        prepareSimulation();
+        startEngine();
+    }
+
+    /**
+     * Prepares simulation to be stepped (see step), does not start engine
+     */
+    public void prepareSimulation() {
         running = true;
         agents = getBoard().getAgents();
-        tasks = prepareTasks(agents);
+        mover = new StripMover(board);
+    }
 
-        timer.setRepeats(true);
-        timer.start();
+    /**
+     * Stops executors, controller cannot be used afterwards
+     */
+    public void shutdown() {
+        pauseSimulation();
+        stopRecording();
+        closeReplay();
+        if (executorsPool != null) {
+            executorsPool.shutdown();
+        }
+        metrics.unregister();
     }
 
     /**
@@ -233,22 +467,196 @@ public class SimController implements ActionListener {
     }
 
     /**
-     * Class created to disperse computation (updating state of agents)
+     * Opens recording and switches to replay mode (simulation is paused, board is not changed),
+     * Start and Stop control playback afterwards
+     *
+     * @param file - recorded trajectories
+     * @throws IOException if file cannot be read
+     */
+    public void openReplay(File file) throws IOException {
+        pauseSimulation();
+        stopRecording();
+        closeReplay();
+        replay = new TrajectoryReader(file);
+        running = true;
+        if (replay.getFramesCount() > 0) {
+            replay.seek(0);
+        }
+        publishReplay();
+    }
+
+    /**
+     * Leaves replay mode (if replaying)
+     */
+    public void closeReplay() {
+        if (replay != null) {
+            pauseSimulation();
+            try {
+                replay.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            replay = null;
+            replayFrame = -1;
+        }
+    }
+
+    public boolean isReplaying() {
+        return replay != null;
+    }
+
+    /**
+     * @return number of frames of replayed recording, 0 if not replaying
+     */
+    public long getReplayFramesCount() {
+        return (replay != null) ? replay.getFramesCount() : 0;
+    }
+
+    /**
+     * @return current frame of replay, -1 if not replaying
+     */
+    public long getReplayFrame() {
+        return replayFrame;
+    }
+
+    /**
+     * Jumps to given frame of replay (playback continues from there if it was running)
+     *
+     * @param frame - index of frame
+     */
+    public void seekReplay(long frame) {
+        if (replay == null || frame < 0 || frame >= replay.getFramesCount()) {
+            return;
+        }
+        boolean wasRunning = simulationRunning;
+        pauseSimulation();
+        try {
+            replay.seek(frame);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        publishReplay();
+        if (wasRunning) {
+            startEngine();
+        }
+    }
+
+    /**
+     * Moves replay to next frame and publishes it
+     *
+     * @return false if there are no more frames
+     */
+    private boolean nextReplayFrame() {
+        try {
+            if (!replay.next()) {
+                return false;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        publishReplay();
+        return true;
+    }
+
+    /**
+     * Publishes current frame of replay as snapshot
+     */
+    private void publishReplay() {
+        BoardSnapshot snapshot = snapshots.prepare();
+        int count = (replay.getFrame() >= 0) ? replay.getAgentsCount() : 0;
+        snapshot.reset(replay.getIteration(), count, replay.getAgentRadius());
+        for (int i = 0; i < count; i++) {
+            snapshot.setAgent(i, (int) Math.round(replay.getPositionX(i)), (int) Math.round(replay.getPositionY(i)), replay.getType(i));
+        }
+        for (int i = 0; i < replay.getTypesCount(); i++) {
+            snapshot.setTypeColour(i, replay.getTypeColour(i));
+        }
+        snapshot.setObstaclesCount(replay.getObstaclesCount());
+        for (int i = 0; i < replay.getObstaclesCount(); i++) {
+            for (int j = 0; j < 4; j++) {
+                snapshot.setObstacle(i, j, replay.getObstacle(i, j));
+            }
+        }
+        snapshots.publish();
+        replayFrame = replay.getFrame();
+    }
+
+    /**
+     * Loop of engine thread - iterations paced by fps parameter (iterations per second), snapshot published after each.
+     * In replay mode frames of recording are published instead, replaySpeed times faster.
+     */
+    private final class Engine implements Runnable {
+        @Override
+        public void run() {
+            long next = System.nanoTime();
+            while (simulationRunning) {
+                if (replay != null) {
+                    if (changedParameters != null) {
+                        applyChangedParameters();
+                    }
+                    if (!nextReplayFrame()) {
+                        simulationRunning = false; // end of recording
+                        break;
+                    }
+                } else {
+                    step();
+                    long publishStart = System.nanoTime();
+                    publishSnapshot();
+                    metrics.addPhase(Phase.PUBLISH, System.nanoTime() - publishStart);
+                }
+
+                Parameters parameters = board.getParameters();
+                double rate = Math.max(parameters.fps, 1) * ((replay != null) ? parameters.replaySpeed : 1);
+                next += (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+                long wait = next - System.nanoTime();
+                if (wait <= 0) {
+                    next = System.nanoTime(); // behind schedule, do not try to catch up
+                }
+                while (wait > 0 && simulationRunning) {
+                    LockSupport.parkNanos(wait);
+                    wait = next - System.nanoTime();
+                }
+            }
+            if (mainFrame != null) {
+                mainFrame.getLeftPanel().repaint();
+            }
+        }
+    }
+
+    /**
+     * Task finding neighbors or updating state of range of agents
      * <p/>
-     * Holds list of agents
+     * Range bigger than threshold is split into halves, so idle threads steal work from busy ones
      */
-    private final class AgentsTask implements Callable<String> {
-        private final List<BaseAgent> agents;
+    private final class AgentsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to; // range of agents (indexes in list), to exclusive
+        private final int threshold; // max size of range computed without splitting
+        private final boolean neighbors; // true - finding neighbors, false - updating state
 
-        public AgentsTask(List<BaseAgent> agents) {
-            this.agents = agents;
+        AgentsTask(int from, int to, int threshold, boolean neighbors) {
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.neighbors = neighbors;
         }
 
-        public String call() {
-            for (BaseAgent agent : agents) {
-                agent.updateState();
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                for (int i = from; i < to; i++) {
+                    if (neighbors) {
+                        agents.get(i).prepareNeighbors();
+                    } else {
+                        agents.get(i).updateStateFromNeighbors();
+                    }
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new AgentsTask(from, middle, threshold, neighbors), new AgentsTask(middle, to, threshold, neighbors));
             }
-            return "Run";
         }
     }
 }
@@ -1,13 +1,22 @@
 package controller;
 
 import graphics.CrowdFrame;
+import metrics.MetricsServer;
 
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
 
 /**
  * Main simulation class
+ * <p/>
+ * Usage: Simulation [--metrics-port N]
  */
 class Simulation {
+    private int metricsPort = -1; // port of metrics endpoint (see MetricsServer), -1 if disabled
+    private final SimController controller = new SimController(); // controller of simulation
+    private MetricsServer metricsServer = null; // server of metrics, null if not started
 
     /**
      * Main
@@ -15,14 +24,68 @@ class Simulation {
      * @param args - program arguments
      */
     public static void main(String[] args) {
-        final SimController controller = new SimController();
+        Simulation simulation = new Simulation();
+        simulation.parseArguments(args);
+        simulation.run();
+    }
+
+    /**
+     * Reads options from program arguments
+     *
+     * @param args - program arguments
+     */
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value of option " + args[i]);
+            }
+            switch (args[i]) {
+                case "--metrics-port":
+                    metricsPort = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+    }
+
+    /**
+     * Starts metrics server (if enabled) and opens window, both are stopped when window is closed
+     */
+    private void run() {
+        controller.getMetrics().register("gui");
+        if (metricsPort >= 0) {
+            try {
+                metricsServer = new MetricsServer(metricsPort, controller.getMetrics());
+                System.out.println("Metrics: http://localhost:" + metricsServer.getPort() + "/metrics");
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
         EventQueue.invokeLater(new Runnable() {
             public void run() {
                 CrowdFrame crowdFrame = new CrowdFrame(controller);
                 controller.setMainFrame(crowdFrame);
                 controller.initialize(crowdFrame.getSimulationPanelWidth(), crowdFrame.getSimulationPanelHeight());
+                crowdFrame.addWindowListener(new WindowAdapter() {
+                    @Override
+                    public void windowClosing(WindowEvent e) {
+                        shutdown();
+                    }
+                });
                 crowdFrame.setVisible(true);
             }
         });
     }
+
+    /**
+     * Stops simulation (finishing recording, if any) and metrics server
+     */
+    private void shutdown() {
+        controller.shutdown();
+        if (metricsServer != null) {
+            metricsServer.stop();
+            metricsServer = null;
+        }
+    }
 }
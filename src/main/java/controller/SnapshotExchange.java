@@ -0,0 +1,66 @@
+package controller;
+
+import agents.Board;
+import agents.BoardSnapshot;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free exchange of board snapshots between simulation thread (single writer) and GUI thread (single reader)
+ * <p/>
+ * Triple buffering: writer fills its back snapshot and swaps it with the ready one, reader takes the ready snapshot
+ * and gives back the one it was drawing. Snapshot is never written while it is read, and neither thread waits for the other.
+ */
+public class SnapshotExchange {
+    private final AtomicReference<BoardSnapshot> ready = new AtomicReference<>(); // newest published snapshot, not taken yet
+    private final AtomicReference<BoardSnapshot> free = new AtomicReference<>(); // snapshot returned by reader
+    private BoardSnapshot back = new BoardSnapshot(); // snapshot filled by writer
+    private BoardSnapshot front; // snapshot read by reader
+
+    /**
+     * Captures state of board and makes it available to reader (writer's side)
+     *
+     * @param board     - simulation board
+     * @param iteration - number of iteration
+     */
+    public void publish(Board board, long iteration) {
+        back.capture(board, iteration);
+        publish();
+    }
+
+    /**
+     * Returns snapshot to be filled by writer and published (see publish())
+     *
+     * @return writer's snapshot
+     */
+    public BoardSnapshot prepare() {
+        return back;
+    }
+
+    /**
+     * Makes snapshot filled by writer available to reader (writer's side)
+     */
+    public void publish() {
+        BoardSnapshot previous = ready.getAndSet(back);
+        if (previous == null) {
+            previous = free.getAndSet(null);
+        }
+        back = (previous != null) ? previous : new BoardSnapshot();
+    }
+
+    /**
+     * Returns newest published snapshot (reader's side), valid until next call
+     *
+     * @return snapshot or null if nothing was published yet
+     */
+    public BoardSnapshot latest() {
+        BoardSnapshot newest = ready.getAndSet(null);
+        if (newest != null) {
+            if (front != null) {
+                free.set(front);
+            }
+            front = newest;
+        }
+        return front;
+    }
+}
@@ -5,11 +5,14 @@ import listeners.ChangerListener;
 import simulation.Parameters;
 
 import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.io.IOException;
 import java.util.Enumeration;
 
 public class CrowdFrame extends JFrame {
@@ -28,6 +31,8 @@ public class CrowdFrame extends JFrame {
     private JPanel settingPanelMain;
     private JPanel settingPanelParameters;
     private ButtonGroup addingObjectsGroup;
+    private JSlider replaySlider; // position of replay
+    private boolean updatingReplaySlider = false; // true while slider follows replay (not moved by user)
 
     public DraggablePanel getLeftPanel() {
         return leftPanel;
@@ -47,6 +52,7 @@ public class CrowdFrame extends JFrame {
 
     private void initUI(final SimController controller) {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        final Parameters parameters = controller.getParameters();
         setTitle("Demonstration Simulation");
         setSize(1024, 668);
         setLocationRelativeTo(null);
@@ -134,30 +140,30 @@ public class CrowdFrame extends JFrame {
 
         final LabelSpinnerPanel crowdDensity = new LabelSpinnerPanel(
                 30, rbObstacles.getY() + rbObstacles.getHeight(),
-                Parameters.crowdSparsity, 1.0, 5.0, 1.0, "Crowd sparsity");
+                parameters.crowdSparsity, 1.0, 5.0, 1.0, "Crowd sparsity");
         crowdDensity.getSpinner().addChangeListener(new ChangerListener(crowdDensity,
-                ChangerListener.Parameters.crowdSparsity));
+                ChangerListener.Parameters.crowdSparsity, controller));
         addingPanel.add(crowdDensity);
 
         LabelSpinnerPanel partOfModerate = new LabelSpinnerPanel(
                 30, crowdDensity.getY() + crowdDensity.getHeight(),
-                Parameters.partOfModerate, 11.0, 30.0, 1.0, "Part of moderate");
+                parameters.partOfModerate, 11.0, 30.0, 1.0, "Part of moderate");
         partOfModerate.getSpinner().addChangeListener(new ChangerListener(partOfModerate,
-                ChangerListener.Parameters.partOfModerate));
+                ChangerListener.Parameters.partOfModerate, controller));
         addingPanel.add(partOfModerate);
 
         LabelSpinnerPanel partOfTroubleMakers = new LabelSpinnerPanel(
                 30, partOfModerate.getY() + partOfModerate.getHeight(),
-                Parameters.partOfTroubleMakers, 0.0, 10.0, 1.0, "Part of Trouble Makers");
+                parameters.partOfTroubleMakers, 0.0, 10.0, 1.0, "Part of Trouble Makers");
         partOfTroubleMakers.getSpinner().addChangeListener(new ChangerListener(partOfTroubleMakers,
-                ChangerListener.Parameters.partOfTroubleMakers));
+                ChangerListener.Parameters.partOfTroubleMakers, controller));
         addingPanel.add(partOfTroubleMakers);
 
         LabelSpinnerPanel agentRadius = new LabelSpinnerPanel(
                 30, partOfTroubleMakers.getY() + partOfTroubleMakers.getHeight(),
-                Parameters.agentRadiusGUI, 2.0, 5.0, 1.0, "Agents radius");
+                parameters.agentRadiusGUI, 2.0, 5.0, 1.0, "Agents radius");
         agentRadius.getSpinner().addChangeListener(new ChangerListener(agentRadius,
-                ChangerListener.Parameters.agentRadius));
+                ChangerListener.Parameters.agentRadius, controller));
         addingPanel.add(agentRadius);
 
         addingPanel.updateHeight(10);
@@ -250,6 +256,9 @@ public class CrowdFrame extends JFrame {
         });
         settingPanelMain.add(simulationControlPanel);
 
+        settingPanelMain.add(createReplayPanel(controller,
+                simulationControlPanel.getY() + simulationControlPanel.getHeight() - 20));
+
         settingPanelParameters = new JPanel();
         settingPanelParameters.setOpaque(false);
         settingPanelParameters.setBounds(0, 0, settingPanel.getWidth(),
@@ -261,8 +270,8 @@ public class CrowdFrame extends JFrame {
 
         parametersFps.add(createTitle("Frames per second", 25, 10));
         LabelSpinnerPanel fps = new LabelSpinnerPanel(30, 30,
-                Parameters.fps, 10.0, 50.0, 1.0, "FPS");
-        fps.getSpinner().addChangeListener(new ChangerListener(fps, ChangerListener.Parameters.fps));
+                parameters.fps, 10.0, 50.0, 1.0, "FPS");
+        fps.getSpinner().addChangeListener(new ChangerListener(fps, ChangerListener.Parameters.fps, controller));
         parametersFps.add(fps);
         parametersFps.updateHeight(10);
         settingPanelParameters.add(parametersFps);
@@ -275,30 +284,30 @@ public class CrowdFrame extends JFrame {
 
         LabelSpinnerPanel maxVelocityPassive = new LabelSpinnerPanel(
                 30, 50,
-                Parameters.maxVelocityPassive, 0.5, 2.0, 0.1, "Max Velocity Passive");
+                parameters.maxVelocityPassive, 0.5, 2.0, 0.1, "Max Velocity Passive");
         maxVelocityPassive.getSpinner().addChangeListener(new ChangerListener(maxVelocityPassive,
-                ChangerListener.Parameters.maxVelocityPassive));
+                ChangerListener.Parameters.maxVelocityPassive, controller));
         parametersAfterSimulation.add(maxVelocityPassive);
 
         LabelSpinnerPanel maxVelocityModerate = new LabelSpinnerPanel(
                 30, maxVelocityPassive.getY() + maxVelocityPassive.getHeight(),
-                Parameters.maxVelocityModerate, 0.5, 2, 0.1, "Max Velocity Moderate");
+                parameters.maxVelocityModerate, 0.5, 2, 0.1, "Max Velocity Moderate");
         maxVelocityModerate.getSpinner().addChangeListener(new ChangerListener(maxVelocityModerate,
-                ChangerListener.Parameters.maxVelocityModerate));
+                ChangerListener.Parameters.maxVelocityModerate, controller));
         parametersAfterSimulation.add(maxVelocityModerate);
 
         LabelSpinnerPanel maxVelocityTrouble = new LabelSpinnerPanel(
                 30, maxVelocityModerate.getY() + maxVelocityModerate.getHeight(),
-                Parameters.maxVelocityTrouble, 0.5, 2.0, 0.1, "Max Velocity Trouble");
+                parameters.maxVelocityTrouble, 0.5, 2.0, 0.1, "Max Velocity Trouble");
         maxVelocityTrouble.getSpinner().addChangeListener(new ChangerListener(maxVelocityTrouble,
-                ChangerListener.Parameters.maxVelocityTrouble));
+                ChangerListener.Parameters.maxVelocityTrouble, controller));
         parametersAfterSimulation.add(maxVelocityTrouble);
 
         LabelSpinnerPanel viewRange = new LabelSpinnerPanel(
                 30, maxVelocityTrouble.getY() + maxVelocityTrouble.getHeight(),
-                Parameters.viewRange, 5.0, 30.0, 1.0, "View Range");
+                parameters.viewRange, 5.0, 30.0, 1.0, "View Range");
         viewRange.getSpinner().addChangeListener(new ChangerListener(viewRange,
-                ChangerListener.Parameters.viewRange));
+                ChangerListener.Parameters.viewRange, controller));
         parametersAfterSimulation.add(viewRange);
 
 
@@ -419,6 +428,71 @@ public class CrowdFrame extends JFrame {
         settingPanelParameters.add(simulationControlPanel_2);
     }
 
+    /**
+     * Creates panel controlling replay of recorded trajectories - opening file, speed and position of replay
+     *
+     * @param controller - application controller
+     * @param y          - position of panel
+     * @return panel
+     */
+    private ImagePanel createReplayPanel(final SimController controller, int y) {
+        final Parameters parameters = controller.getParameters();
+        ImagePanel replayPanel = new ImagePanel("resources/background/panel.png",
+                0, y, -1, 170);
+        replayPanel.add(createTitle("Replay", 25, 20));
+
+        ImageButton btnOpen = new ImageButton("resources/background/bgBtn.png", "Open recording", 27, 50);
+        replayPanel.add(btnOpen);
+        btnOpen.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent arg0) {
+                JFileChooser chooser = new JFileChooser();
+                if (chooser.showOpenDialog(CrowdFrame.this) == JFileChooser.APPROVE_OPTION) {
+                    try {
+                        controller.openReplay(chooser.getSelectedFile());
+                        updatingReplaySlider = true;
+                        replaySlider.setMaximum((int) Math.max(controller.getReplayFramesCount() - 1, 0));
+                        replaySlider.setValue(0);
+                        updatingReplaySlider = false;
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        JOptionPane.showMessageDialog(CrowdFrame.this, e.getMessage(), "Replay", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }
+        });
+
+        LabelSpinnerPanel speed = new LabelSpinnerPanel(30, 55 + btnOpen.getHeight(),
+                parameters.replaySpeed, 0.25, 8.0, 0.25, "Replay speed");
+        speed.getSpinner().addChangeListener(new ChangerListener(speed, ChangerListener.Parameters.replaySpeed, controller));
+        replayPanel.add(speed);
+
+        replaySlider = new JSlider(0, 0, 0);
+        replaySlider.setBounds(25, speed.getY() + speed.getHeight(), 220, 25);
+        replaySlider.setOpaque(false);
+        replaySlider.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent changeEvent) {
+                if (!updatingReplaySlider && controller.isReplaying()) {
+                    controller.seekReplay(replaySlider.getValue());
+                }
+            }
+        });
+        replayPanel.add(replaySlider);
+
+        // slider follows replay
+        Timer sliderTimer = new Timer(200, new ActionListener() {
+            public void actionPerformed(ActionEvent arg0) {
+                if (controller.isReplaying() && !replaySlider.getValueIsAdjusting()) {
+                    updatingReplaySlider = true;
+                    replaySlider.setValue((int) Math.max(controller.getReplayFrame(), 0));
+                    updatingReplaySlider = false;
+                }
+            }
+        });
+        sliderTimer.start();
+        return replayPanel;
+    }
+
     private JTextField createTitle(String title, int x, int y) {
         JTextField titleTmp = new JTextField(title);
         titleTmp.setBounds(x, y, 200, 30);
@@ -0,0 +1,177 @@
+package graphics;
+
+import agents.AgentsTypes;
+import agents.BoardSnapshot;
+
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Batched rendering of board snapshot
+ * <p/>
+ * Static layer (background and obstacles) is drawn once and cached, every frame starts from its copy.
+ * Agents are rasterised directly into pixels of frame with sprites pre-rendered (antialiased) for every type of agent,
+ * then frame is drawn on screen at once.
+ */
+class CrowdRenderer {
+    private final int width, height; // size of frame
+    private final Image background; // background image (scaled to frame)
+    private final BufferedImage frame; // image drawn on screen
+    private final int[] framePixels; // pixels of frame (RGB)
+    private final int[] staticPixels; // pixels of background with obstacles
+    private int[] staticObstacles = null; // obstacles drawn on static layer (x1, y1, x2, y2 per rectangle)
+
+    private int spriteRadius = -1; // radius of agents used to render sprites
+    private final int[] spriteColours = new int[AgentsTypes.values().length]; // colours used to render sprites
+    private int spriteSize; // width and height of sprite
+    private int[][] spritePixels; // sprites (RGB per type) - pixels
+    private int[] spriteAlpha; // sprites - coverage of pixels (0 - 255, shared by all types)
+
+    /**
+     * Creates renderer
+     *
+     * @param width      - width of frame
+     * @param height     - height of frame
+     * @param background - background image
+     */
+    CrowdRenderer(int width, int height, Image background) {
+        this.width = width;
+        this.height = height;
+        this.background = background;
+        frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        framePixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        staticPixels = new int[width * height];
+    }
+
+    /**
+     * Draws snapshot
+     *
+     * @param g        - graphics of panel
+     * @param snapshot - snapshot of board (may be null)
+     */
+    void render(Graphics g, BoardSnapshot snapshot) {
+        if (staticObstacles == null || (snapshot != null && !sameObstacles(snapshot))) {
+            renderStaticLayer(snapshot);
+        }
+        System.arraycopy(staticPixels, 0, framePixels, 0, staticPixels.length);
+        if (snapshot != null) {
+            prepareSprites(snapshot);
+            for (int i = 0; i < snapshot.getAgentsCount(); i++) {
+                stamp(snapshot.getPositionX(i), snapshot.getPositionY(i), spritePixels[snapshot.getType(i)]);
+            }
+        }
+        g.drawImage(frame, 0, 0, null);
+    }
+
+    /**
+     * @param snapshot - snapshot of board
+     * @return true if snapshot has the same obstacles as static layer
+     */
+    private boolean sameObstacles(BoardSnapshot snapshot) {
+        if (staticObstacles.length != 4 * snapshot.getObstaclesCount()) {
+            return false;
+        }
+        for (int i = 0; i < staticObstacles.length; i++) {
+            if (staticObstacles[i] != snapshot.getObstacle(i / 4, i % 4)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Draws background and obstacles of snapshot to static layer
+     *
+     * @param snapshot - snapshot of board (may be null)
+     */
+    private void renderStaticLayer(BoardSnapshot snapshot) {
+        int count = (snapshot != null) ? snapshot.getObstaclesCount() : 0;
+        staticObstacles = new int[4 * count];
+        Graphics2D g = frame.createGraphics();
+        g.drawImage(background, 0, 0, width, height, null);
+        g.setPaint(Color.BLACK);
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < 4; j++) {
+                staticObstacles[4 * i + j] = snapshot.getObstacle(i, j);
+            }
+            g.fillRect(staticObstacles[4 * i], staticObstacles[4 * i + 1],
+                    staticObstacles[4 * i + 2] - staticObstacles[4 * i], staticObstacles[4 * i + 3] - staticObstacles[4 * i + 1]);
+        }
+        g.dispose();
+        System.arraycopy(framePixels, 0, staticPixels, 0, staticPixels.length);
+    }
+
+    /**
+     * Renders sprites again if radius or colours of agents have changed
+     *
+     * @param snapshot - snapshot of board
+     */
+    private void prepareSprites(BoardSnapshot snapshot) {
+        boolean changed = snapshot.getAgentRadius() != spriteRadius;
+        for (int i = 0; i < spriteColours.length; i++) {
+            changed |= snapshot.getTypeColour(i) != spriteColours[i];
+        }
+        if (!changed) {
+            return;
+        }
+        spriteRadius = snapshot.getAgentRadius();
+        spriteSize = 2 * spriteRadius + 2;
+        // coverage of circle, drawn the same way as single agent in shapes mode
+        BufferedImage mask = new BufferedImage(spriteSize, spriteSize, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = mask.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setPaint(Color.WHITE);
+        g.fill(new Ellipse2D.Double(0, 0, 2 * spriteRadius, 2 * spriteRadius));
+        g.dispose();
+        spriteAlpha = new int[spriteSize * spriteSize];
+        for (int i = 0; i < spriteAlpha.length; i++) {
+            spriteAlpha[i] = mask.getRGB(i % spriteSize, i / spriteSize) >>> 24;
+        }
+        spritePixels = new int[spriteColours.length][];
+        for (int i = 0; i < spriteColours.length; i++) {
+            spriteColours[i] = snapshot.getTypeColour(i);
+            spritePixels[i] = new int[spriteAlpha.length];
+            Arrays.fill(spritePixels[i], spriteColours[i] & 0xFFFFFF);
+        }
+    }
+
+    /**
+     * Draws sprite with middle in point (x,y), clipped to frame
+     *
+     * @param x      - coordinate x of point
+     * @param y      - coordinate y of point
+     * @param sprite - pixels of sprite
+     */
+    private void stamp(int x, int y, int[] sprite) {
+        int left = x - spriteRadius, up = y - spriteRadius;
+        int fromX = Math.max(0, -left), toX = Math.min(spriteSize, width - left);
+        int fromY = Math.max(0, -up), toY = Math.min(spriteSize, height - up);
+        for (int j = fromY; j < toY; j++) {
+            int row = (up + j) * width + left, spriteRow = j * spriteSize;
+            for (int i = fromX; i < toX; i++) {
+                int alpha = spriteAlpha[spriteRow + i];
+                if (alpha == 255) {
+                    framePixels[row + i] = sprite[spriteRow + i];
+                } else if (alpha != 0) {
+                    framePixels[row + i] = blend(sprite[spriteRow + i], framePixels[row + i], alpha);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param src   - colour drawn (RGB)
+     * @param dst   - colour of frame (RGB)
+     * @param alpha - coverage of src (0 - 255)
+     * @return mixed colour
+     */
+    private static int blend(int src, int dst, int alpha) {
+        int inverse = 255 - alpha;
+        int rb = ((src & 0xFF00FF) * alpha + (dst & 0xFF00FF) * inverse) >>> 8;
+        int g = ((src & 0x00FF00) * alpha + (dst & 0x00FF00) * inverse) >>> 8;
+        return (rb & 0xFF00FF) | (g & 0x00FF00);
+    }
+}
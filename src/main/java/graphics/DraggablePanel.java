@@ -1,27 +1,32 @@
 package graphics;
 
-import agents.BaseAgent;
+import agents.AgentsTypes;
+import agents.BoardSnapshot;
 import controller.SimController;
 import org.apache.commons.math3.util.Pair;
 import simulation.Parameters;
 
+import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Rectangle2D;
-import java.util.LinkedList;
 
 public class DraggablePanel extends ImagePanel implements MouseMotionListener, MouseListener {
 
     private static final long serialVersionUID = 1L;
+    private static final int REPAINT_PERIOD = 16; // period of repainting while simulation is running (ms), ~60 frames per second
 
     private Rectangle selection; // selection rectangle
     private Point anchor;
     private final SimController controller;
     private boolean isDefaultCursor = true;
     private boolean isDraggable = true;
+    private CrowdRenderer renderer; // batched rendering (see batchedRendering parameter), created on first use
 
     public DraggablePanel(String img, int x, int y, int width, int height,
                           SimController controller) {
@@ -29,46 +34,87 @@ public class DraggablePanel extends ImagePanel implements MouseMotionListener, M
         addMouseListener(this);
         addMouseMotionListener(this);
         this.controller = controller;
+
+        Timer repaintTimer = new Timer(REPAINT_PERIOD, new ActionListener() {
+            public void actionPerformed(ActionEvent event) {
+                if (DraggablePanel.this.controller.isSimulationRunning()) {
+                    repaint();
+                }
+            }
+        });
+        repaintTimer.start();
     }
 
     public void paintComponent(Graphics g) {
-        super.paintComponent(g);
+        BoardSnapshot snapshot = controller.getSnapshot(); // never modified while drawn
+        Graphics2D g2 = (Graphics2D) g;
+        Ellipse2D agentCircle = new Ellipse2D.Double();
+        if (controller.getParameters().batchedRendering) {
+            if (renderer == null) {
+                renderer = new CrowdRenderer(getWidth(), getHeight(), getImage());
+            }
+            renderer.render(g, snapshot);
+            paintSelection(g2);
+        } else {
+            super.paintComponent(g);
+            paintSelection(g2);
+            paintShapes(g2, snapshot);
+        }
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        Pair<Integer, Integer> desiredPoint = controller.getParameters().desiredPoint;
+        agentCircle.setFrameFromCenter(desiredPoint.getFirst(), desiredPoint.getSecond(), desiredPoint.getFirst() + 2, desiredPoint.getSecond() + 2);
+        g2.setPaint(Color.WHITE);
+        g2.fill(agentCircle);
+        this.validate();
+    }
+
+    /**
+     * Draws selection rectangle (if any)
+     *
+     * @param g2d - graphics
+     */
+    private void paintSelection(Graphics2D g2d) {
         if (selection != null) {
-            Graphics2D g2d = (Graphics2D) g;
             g2d.setColor(new Color(225, 225, 255, 128));
             g2d.fill(selection);
             g2d.setColor(Color.white);
             g2d.draw(selection);
         }
-        Graphics2D g2 = (Graphics2D) g;
+    }
+
+    /**
+     * Draws every agent and obstacle as separate shape
+     *
+     * @param g2       - graphics
+     * @param snapshot - snapshot of board (may be null)
+     */
+    private void paintShapes(Graphics2D g2, BoardSnapshot snapshot) {
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
                 RenderingHints.VALUE_ANTIALIAS_ON);
 
-        LinkedList<BaseAgent> agents = controller.getBoard().getAgents();
-        LinkedList<Pair<Pair<Integer, Integer>, Pair<Integer, Integer>>> obstaclesRect = controller
-                .getBoard().getObstaclesRect();
         Ellipse2D agentCircle = new Ellipse2D.Double();
         Rectangle2D obstacle = new Rectangle2D.Double();
-        for (BaseAgent act : agents) {
-            agentCircle.setFrameFromCenter(act.getActualPositionX(),
-                    act.getActualPositionY(), act.getActualPositionX()
-                            + Parameters.agentRadius, act.getActualPositionY()
-                            + Parameters.agentRadius);
-            g2.setPaint(act.getColour());
-            g2.fill(agentCircle);
-        }
-        for (Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> act : obstaclesRect) {
-            obstacle.setFrame(act.getFirst().getFirst(), act.getFirst()
-                    .getSecond(), act.getSecond().getFirst()
-                    - act.getFirst().getFirst(), act.getSecond().getSecond()
-                    - act.getFirst().getSecond());
+        if (snapshot != null) {
+            int radius = snapshot.getAgentRadius();
+            Color[] colours = new Color[AgentsTypes.values().length];
+            for (int i = 0; i < colours.length; i++) {
+                colours[i] = new Color(snapshot.getTypeColour(i));
+            }
+            for (int i = 0; i < snapshot.getAgentsCount(); i++) {
+                int x = snapshot.getPositionX(i), y = snapshot.getPositionY(i);
+                agentCircle.setFrameFromCenter(x, y, x + radius, y + radius);
+                g2.setPaint(colours[snapshot.getType(i)]);
+                g2.fill(agentCircle);
+            }
             g2.setPaint(Color.BLACK);
-            g2.fill(obstacle);
+            for (int i = 0; i < snapshot.getObstaclesCount(); i++) {
+                obstacle.setFrame(snapshot.getObstacle(i, 0), snapshot.getObstacle(i, 1),
+                        snapshot.getObstacle(i, 2) - snapshot.getObstacle(i, 0),
+                        snapshot.getObstacle(i, 3) - snapshot.getObstacle(i, 1));
+                g2.fill(obstacle);
+            }
         }
-        agentCircle.setFrameFromCenter(Parameters.desiredPoint.getFirst(), Parameters.desiredPoint.getSecond(), Parameters.desiredPoint.getFirst() + 2, Parameters.desiredPoint.getSecond() + 2);
-        g2.setPaint(Color.WHITE);
-        g2.fill(agentCircle);
-        this.validate();
     }
 
     public void changeCursor() {
@@ -92,7 +138,9 @@ public class DraggablePanel extends ImagePanel implements MouseMotionListener, M
                 selection = new Rectangle(anchor);
             } else {
                 anchor = e.getPoint();
-                Parameters.desiredPoint = new Pair<>(anchor.x, anchor.y);
+                Parameters changed = controller.copyParameters();
+                changed.desiredPoint = new Pair<>(anchor.x, anchor.y);
+                controller.changeParameters(changed);
                 this.setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
                 isDraggable = true;
                 isDefaultCursor = true;
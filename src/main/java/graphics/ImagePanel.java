@@ -36,6 +36,10 @@ class ImagePanel extends JPanel {
         g.drawImage(img, 0, 0, this.width, this.height, null);
     }
 
+    Image getImage() {
+        return img;
+    }
+
     @Override
     public int getWidth() {
         return width;
@@ -1,5 +1,6 @@
 package listeners;
 
+import controller.SimController;
 import graphics.LabelSpinnerPanel;
 
 import javax.swing.event.ChangeEvent;
@@ -8,57 +9,70 @@ import javax.swing.event.ChangeListener;
 public class ChangerListener implements ChangeListener {
     public enum Parameters {
         agentRadius, crowdSparsity, viewRange, partOfModerate, partOfTroubleMakers,
-        fps, maxVelocityPassive, maxVelocityModerate, maxVelocityTrouble
+        fps, maxVelocityPassive, maxVelocityModerate, maxVelocityTrouble, replaySpeed
     }
 
     private final LabelSpinnerPanel labelSpinner;
     private final Parameters label;
+    private final SimController controller;
 
-    public ChangerListener(LabelSpinnerPanel labelSpinner, Parameters label) {
+    /**
+     * @param labelSpinner - spinner of parameter
+     * @param label        - changed parameter
+     * @param controller   - controller of simulation, parameters are changed through it (see SimController.changeParameters)
+     */
+    public ChangerListener(LabelSpinnerPanel labelSpinner, Parameters label, SimController controller) {
         this.labelSpinner = labelSpinner;
         this.label = label;
+        this.controller = controller;
     }
 
     @Override
     public void stateChanged(ChangeEvent arg0) {
+        simulation.Parameters parameters = controller.copyParameters();
         switch (label) {
             case agentRadius: {
-                simulation.Parameters.agentRadiusGUI = (int) labelSpinner.getSpinnerDoubleValue();
+                parameters.agentRadiusGUI = (int) labelSpinner.getSpinnerDoubleValue();
                 break;
             }
             case crowdSparsity: {
-                simulation.Parameters.crowdSparsity = (int) labelSpinner.getSpinnerDoubleValue();
+                parameters.crowdSparsity = (int) labelSpinner.getSpinnerDoubleValue();
                 break;
             }
             case viewRange: {
-                simulation.Parameters.viewRange = (int) labelSpinner.getSpinnerDoubleValue();
+                parameters.viewRange = (int) labelSpinner.getSpinnerDoubleValue();
                 break;
             }
             case partOfModerate: {
-                simulation.Parameters.partOfModerate = (int) labelSpinner.getSpinnerDoubleValue();
+                parameters.partOfModerate = (int) labelSpinner.getSpinnerDoubleValue();
                 break;
             }
             case partOfTroubleMakers: {
-                simulation.Parameters.partOfTroubleMakers = (int) labelSpinner.getSpinnerDoubleValue();
+                parameters.partOfTroubleMakers = (int) labelSpinner.getSpinnerDoubleValue();
                 break;
             }
             case maxVelocityPassive: {
-                simulation.Parameters.maxVelocityPassive = labelSpinner.getSpinnerDoubleValue();
+                parameters.maxVelocityPassive = labelSpinner.getSpinnerDoubleValue();
                 break;
             }
             case maxVelocityModerate: {
-                simulation.Parameters.maxVelocityModerate = labelSpinner.getSpinnerDoubleValue();
+                parameters.maxVelocityModerate = labelSpinner.getSpinnerDoubleValue();
                 break;
             }
             case maxVelocityTrouble: {
-                simulation.Parameters.maxVelocityTrouble = (int) labelSpinner.getSpinnerDoubleValue();
+                parameters.maxVelocityTrouble = (int) labelSpinner.getSpinnerDoubleValue();
                 break;
             }
             case fps: {
-                simulation.Parameters.fps = (int) labelSpinner.getSpinnerDoubleValue();
+                parameters.fps = (int) labelSpinner.getSpinnerDoubleValue();
+                break;
+            }
+            case replaySpeed: {
+                parameters.replaySpeed = labelSpinner.getSpinnerDoubleValue();
                 break;
             }
         }
+        controller.changeParameters(parameters);
     }
 
 
@@ -0,0 +1,101 @@
+package metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Local HTTP endpoint (/metrics) exposing TickMetrics in Prometheus text format
+ */
+public class MetricsServer {
+    private final HttpServer server;
+    private final TickMetrics metrics;
+
+    /**
+     * Starts server on loopback interface
+     *
+     * @param port    - port, 0 for any free port
+     * @param metrics - exposed metrics
+     * @throws IOException if server cannot be started
+     */
+    public MetricsServer(int port, TickMetrics metrics) throws IOException {
+        this.metrics = metrics;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = format().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        server.setExecutor(null); // single thread of server
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops server
+     */
+    public void stop() {
+        server.stop(0);
+    }
+
+    /**
+     * @return metrics in Prometheus text format
+     */
+    String format() {
+        StringBuilder text = new StringBuilder();
+        long ticks = metrics.getTicks(); // read first, see TickMetrics
+        metric(text, "crowd_ticks_total", "counter", "Number of simulation iterations", ticks);
+        metric(text, "crowd_agents", "gauge", "Number of agents", metrics.getAgents());
+        metric(text, "crowd_tick_seconds_total", "counter", "Time of iterations", metrics.getTickSeconds());
+        metric(text, "crowd_last_tick_seconds", "gauge", "Time of last iteration", metrics.getLastTickSeconds());
+        header(text, "crowd_phase_seconds_total", "counter", "Time of phases of iterations");
+        for (TickMetrics.Phase phase : TickMetrics.Phase.values()) {
+            sample(text, "crowd_phase_seconds_total{phase=\"" + phase.name().toLowerCase(Locale.ROOT) + "\"}", metrics.getPhaseSeconds(phase));
+        }
+        header(text, "crowd_last_phase_seconds", "gauge", "Time of phases of last iteration");
+        for (TickMetrics.Phase phase : TickMetrics.Phase.values()) {
+            sample(text, "crowd_last_phase_seconds{phase=\"" + phase.name().toLowerCase(Locale.ROOT) + "\"}", metrics.getLastPhaseSeconds(phase));
+        }
+        metric(text, "crowd_neighbors_examined_total", "counter", "Agents examined while finding neighbors", metrics.getNeighborsExamined());
+        metric(text, "crowd_blocked_moves_total", "counter", "Moves blocked by other objects", metrics.getBlockedMoves());
+        metric(text, "crowd_tick_allocated_bytes_total", "counter", "Bytes allocated by threads doing iterations", metrics.getAllocatedBytes());
+        metric(text, "crowd_jvm_allocated_bytes", "gauge", "Bytes allocated by live threads of JVM", metrics.getJvmAllocatedBytes());
+        return text.toString();
+    }
+
+    private static void metric(StringBuilder text, String name, String type, String help, double value) {
+        header(text, name, type, help);
+        sample(text, name, value);
+    }
+
+    private static void header(StringBuilder text, String name, String type, String help) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder text, String name, double value) {
+        text.append(name).append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            text.append((long) value);
+        } else {
+            text.append(value);
+        }
+        text.append('\n');
+    }
+}
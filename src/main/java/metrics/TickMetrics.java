@@ -0,0 +1,315 @@
+package metrics;
+
+import agents.BaseAgent;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Timers and counters of simulation iterations (ticks) - time of every phase, examined neighbors, blocked moves
+ * and bytes allocated by threads doing iterations (thread calling step and workers of its pool, see workersFactory)
+ * <p/>
+ * Written only by thread doing iterations, read by JMX (see TickMetricsMBean) and MetricsServer.
+ * Values are published after every tick (volatile write of ticks), so readers see state after some finished tick.
+ */
+public class TickMetrics implements TickMetricsMBean {
+    /**
+     * Measured phases of iteration
+     */
+    public enum Phase {
+        POLICE_PROPAGATION, PUSH_FORCES, UPDATE_STATE, MOVE, RECORD, PUBLISH
+    }
+
+    private static final int PHASES = Phase.values().length;
+
+    private final com.sun.management.ThreadMXBean threads; // source of allocated bytes, null if not supported
+    private final long[] phaseNanos = new long[PHASES]; // total time of phases
+    private final long[] lastPhaseNanos = new long[PHASES]; // time of phases in last tick
+    private long tickNanos = 0; // total time of ticks
+    private long lastTickNanos = 0; // time of last tick
+    private long neighborsExamined = 0; // total number of agents examined while finding neighbors
+    private long blockedMoves = 0; // total number of moves blocked by other objects
+    private long allocatedBytes = 0; // total bytes allocated by threads doing ticks (while doing them)
+    private int agents = 0; // number of agents in last tick
+    private volatile long ticks = 0; // number of ticks (written last)
+
+    private long tickStart; // start of current tick
+    private long phaseStart; // start of current phase
+    private final ConcurrentLinkedQueue<Thread> workers = new ConcurrentLinkedQueue<>(); // threads of pool doing ticks
+    private long[] threadsAtStart = new long[0]; // ids of threads doing ticks at start of current tick
+    private long[] allocatedAtStart = new long[0]; // bytes allocated by these threads at start of current tick
+    private ObjectName name; // name in MBean server, null if not registered
+
+    public TickMetrics() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threads = (com.sun.management.ThreadMXBean) bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            threads = null;
+        }
+    }
+
+    /**
+     * Starts measuring tick (and its first phase)
+     */
+    public void startTick() {
+        tickStart = phaseStart = System.nanoTime();
+        threadsAtStart = tickThreads();
+        allocatedAtStart = allocatedBy(threadsAtStart);
+    }
+
+    /**
+     * Ends phase of current tick and starts next one
+     *
+     * @param phase - ended phase
+     */
+    public void endPhase(Phase phase) {
+        long now = System.nanoTime();
+        lastPhaseNanos[phase.ordinal()] = now - phaseStart;
+        phaseNanos[phase.ordinal()] += now - phaseStart;
+        phaseStart = now;
+    }
+
+    /**
+     * Ends current tick, counts examined neighbors and blocked moves of agents
+     *
+     * @param agentsList - all agents
+     */
+    public void endTick(List<BaseAgent> agentsList) {
+        long now = System.nanoTime();
+        lastTickNanos = now - tickStart;
+        tickNanos += lastTickNanos;
+        allocatedBytes += allocatedInTick();
+        for (int i = 0; i < agentsList.size(); i++) {
+            BaseAgent agent = agentsList.get(i);
+            neighborsExamined += agent.getNeighborsExamined();
+            if (agent.isMoveBlocked()) {
+                blockedMoves++;
+            }
+        }
+        agents = agentsList.size();
+        ticks++;
+    }
+
+    /**
+     * Measures phase done outside of tick (e.g. publishing snapshot)
+     *
+     * @param phase - phase
+     * @param nanos - time of phase
+     */
+    public void addPhase(Phase phase, long nanos) {
+        lastPhaseNanos[phase.ordinal()] = nanos;
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * Creates factory of workers for pool doing ticks, so bytes allocated by workers are counted too
+     *
+     * @return factory of worker threads (default ones, registered in metrics)
+     */
+    public ForkJoinPool.ForkJoinWorkerThreadFactory workersFactory() {
+        return new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                workers.add(thread);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * @return ids of current thread and of live workers (terminated workers are forgotten)
+     */
+    private long[] tickThreads() {
+        if (threads == null) {
+            return new long[0];
+        }
+        for (Iterator<Thread> iterator = workers.iterator(); iterator.hasNext(); ) {
+            if (!iterator.next().isAlive()) {
+                iterator.remove();
+            }
+        }
+        long[] ids = new long[workers.size() + 1];
+        int count = 0;
+        ids[count++] = Thread.currentThread().getId();
+        for (Thread worker : workers) {
+            if (count < ids.length) {
+                ids[count++] = worker.getId();
+            }
+        }
+        return (count == ids.length) ? ids : Arrays.copyOf(ids, count);
+    }
+
+    private long[] allocatedBy(long[] ids) {
+        return (threads != null && ids.length > 0) ? threads.getThreadAllocatedBytes(ids) : new long[0];
+    }
+
+    /**
+     * @return bytes allocated by threads doing ticks since start of current tick (workers started during tick
+     * are counted from zero, workers terminated during tick are skipped)
+     */
+    private long allocatedInTick() {
+        long[] ids = tickThreads();
+        long[] allocated = allocatedBy(ids);
+        long sum = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (allocated[i] < 0) {
+                continue;
+            }
+            long start = 0;
+            for (int j = 0; j < threadsAtStart.length; j++) {
+                if (threadsAtStart[j] == ids[i]) {
+                    start = Math.max(allocatedAtStart[j], 0);
+                    break;
+                }
+            }
+            sum += allocated[i] - start;
+        }
+        return sum;
+    }
+
+    /**
+     * @return bytes allocated by all live threads of JVM, -1 if not supported
+     */
+    public long getJvmAllocatedBytes() {
+        if (threads == null) {
+            return -1;
+        }
+        long sum = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) {
+                sum += bytes;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @param phase - phase
+     * @return total time of phase in seconds
+     */
+    public double getPhaseSeconds(Phase phase) {
+        return phaseNanos[phase.ordinal()] / 1e9;
+    }
+
+    /**
+     * @param phase - phase
+     * @return time of phase in last tick in seconds
+     */
+    public double getLastPhaseSeconds(Phase phase) {
+        return lastPhaseNanos[phase.ordinal()] / 1e9;
+    }
+
+    public double getTickSeconds() {
+        return tickNanos / 1e9;
+    }
+
+    public double getLastTickSeconds() {
+        return lastTickNanos / 1e9;
+    }
+
+    @Override
+    public long getTicks() {
+        return ticks;
+    }
+
+    @Override
+    public int getAgents() {
+        return agents;
+    }
+
+    @Override
+    public double getLastTickMillis() {
+        return lastTickNanos / 1e6;
+    }
+
+    @Override
+    public double getMeanTickMillis() {
+        long count = ticks;
+        return (count > 0) ? tickNanos / 1e6 / count : 0;
+    }
+
+    @Override
+    public double getPolicePropagationMillis() {
+        return phaseNanos[Phase.POLICE_PROPAGATION.ordinal()] / 1e6;
+    }
+
+    @Override
+    public double getPushForcesMillis() {
+        return phaseNanos[Phase.PUSH_FORCES.ordinal()] / 1e6;
+    }
+
+    @Override
+    public double getUpdateStateMillis() {
+        return phaseNanos[Phase.UPDATE_STATE.ordinal()] / 1e6;
+    }
+
+    @Override
+    public double getMoveMillis() {
+        return phaseNanos[Phase.MOVE.ordinal()] / 1e6;
+    }
+
+    @Override
+    public double getRecordMillis() {
+        return phaseNanos[Phase.RECORD.ordinal()] / 1e6;
+    }
+
+    @Override
+    public double getPublishMillis() {
+        return phaseNanos[Phase.PUBLISH.ordinal()] / 1e6;
+    }
+
+    @Override
+    public long getNeighborsExamined() {
+        return neighborsExamined;
+    }
+
+    @Override
+    public long getBlockedMoves() {
+        return blockedMoves;
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Registers metrics in platform MBean server (visible in JConsole, VisualVM etc.)
+     *
+     * @param simulation - name of simulation, distinguishes simulations of one JVM
+     */
+    public void register(String simulation) {
+        try {
+            name = new ObjectName("crowd:type=TickMetrics,name=" + ObjectName.quote(simulation));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        } catch (JMException e) {
+            e.printStackTrace();
+            name = null;
+        }
+    }
+
+    /**
+     * Removes metrics from MBean server (if registered)
+     */
+    public void unregister() {
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+            name = null;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package metrics;
+
+/**
+ * JMX view of TickMetrics - times are totals since start of simulation, in milliseconds
+ */
+public interface TickMetricsMBean {
+    long getTicks();
+
+    int getAgents();
+
+    double getLastTickMillis();
+
+    double getMeanTickMillis();
+
+    double getPolicePropagationMillis();
+
+    double getPushForcesMillis();
+
+    double getUpdateStateMillis();
+
+    double getMoveMillis();
+
+    double getRecordMillis();
+
+    double getPublishMillis();
+
+    long getNeighborsExamined();
+
+    long getBlockedMoves();
+
+    long getAllocatedBytes();
+
+    long getJvmAllocatedBytes();
+}
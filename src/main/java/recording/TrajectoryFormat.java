@@ -0,0 +1,102 @@
+package recording;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary format of trajectory recordings
+ * <p/>
+ * Header: magic, version, size of board, number of agents, keyframe interval, scales of positions and velocities,
+ * radius of agents, colours of types of agents, obstacles' rectangles and type of every agent
+ * (ordinal of AgentsTypes, agents ordered by id).
+ * <p/>
+ * Then one frame per recorded iteration: length of frame (int, without itself), kind (keyframe or delta), iteration (varlong)
+ * and columns - position x, position y, velocity x, velocity y, state (ordinal of AgentsStates) - each with one value per agent.
+ * Positions and velocities are fixed-point (multiplied by scale and rounded). Values are zigzag varints: absolute in keyframes,
+ * differences to previous frame in delta frames. Every keyframeInterval-th frame is a keyframe.
+ * <p/>
+ * Footer (written when recording is closed): index magic, iteration of first frame, number of frames, number of keyframes
+ * and position of every keyframe in file, then position of footer and index magic again (last 12 bytes of file).
+ * Frames are recorded for consecutive iterations, so any frame is reached by jumping to its keyframe and applying
+ * less than keyframeInterval delta frames. File without footer (e.g. interrupted recording) can be indexed by skipping frames.
+ */
+final class TrajectoryFormat {
+    static final int MAGIC = 0x43445452; // "CDTR"
+    static final int INDEX_MAGIC = 0x43444958; // "CDIX"
+    static final int VERSION = 1;
+    static final byte KEYFRAME = 1;
+    static final byte DELTA = 0;
+    static final int COLUMNS = 5; // number of columns of frame
+    static final int POSITION_SCALE = 100; // positions stored with precision of 0.01 of field
+    static final int VELOCITY_SCALE = 100; // velocities stored with precision of 0.01
+    static final int MAX_VARINT = 5; // max number of bytes of varint (int)
+    static final int MAX_VARLONG = 10; // max number of bytes of varlong
+
+    private TrajectoryFormat() {
+    }
+
+    /**
+     * Writes int as zigzag varint (small absolute values take less bytes)
+     *
+     * @param buffer - output
+     * @param value  - value to write
+     */
+    static void putVarint(ByteBuffer buffer, int value) {
+        int zigzag = (value << 1) ^ (value >> 31);
+        while ((zigzag & ~0x7F) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    /**
+     * Reads zigzag varint
+     *
+     * @param buffer - input
+     * @return value
+     */
+    static int getVarint(ByteBuffer buffer) {
+        int zigzag = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            zigzag |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    /**
+     * Writes long as zigzag varint
+     *
+     * @param buffer - output
+     * @param value  - value to write
+     */
+    static void putVarlong(ByteBuffer buffer, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    /**
+     * Reads zigzag varint (long)
+     *
+     * @param buffer - input
+     * @return value
+     */
+    static long getVarlong(ByteBuffer buffer) {
+        long zigzag = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+}
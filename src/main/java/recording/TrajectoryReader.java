@@ -0,0 +1,347 @@
+package recording;
+
+import agents.AgentsStates;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reads trajectories recorded by TrajectoryRecorder, see TrajectoryFormat
+ * <p/>
+ * Frames between two keyframes form a segment, which is mapped to memory when needed. Seeking to any frame
+ * decodes its keyframe and less than keyframeInterval delta frames, so it takes constant time regardless of length of recording.
+ */
+public class TrajectoryReader implements Closeable {
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+
+    private final int sizeX, sizeY; // size of board
+    private final int agentsCount; // number of agents
+    private final int keyframeInterval; // number of frames between keyframes
+    private final int positionScale, velocityScale; // fixed-point scales
+    private final int agentRadius; // radius of agents
+    private final int[] typeColours; // colours of types of agents (RGB)
+    private final int[] obstacles; // rectangles of obstacles, 4 values per rectangle (x1, y1, x2, y2)
+    private final byte[] types; // types of agents (ordinal of AgentsTypes)
+
+    private long firstIteration; // iteration of first frame
+    private long framesCount; // number of frames
+    private long[] keyframes; // positions of keyframes in file
+    private long framesEnd; // position of the end of last frame
+
+    private final int[][] values; // values of columns of current frame
+    private long frame = -1; // index of current frame, -1 if nothing was read yet
+    private int segment = -1; // index of mapped segment
+    private MappedByteBuffer buffer; // mapped segment
+
+    /**
+     * Opens recording and reads its header and index
+     *
+     * @param input - recorded file
+     * @throws IOException if file cannot be read or is not a recording
+     */
+    public TrajectoryReader(File input) throws IOException {
+        file = new RandomAccessFile(input, "r");
+        channel = file.getChannel();
+        try {
+            if (channel.size() < 8) {
+                throw new IOException("Not a trajectory recording: " + input);
+            }
+            ByteBuffer header = read(0, 4 * 10); // fixed part of header and number of types
+            if (header.getInt() != TrajectoryFormat.MAGIC || header.getInt() != TrajectoryFormat.VERSION) {
+                throw new IOException("Not a trajectory recording: " + input);
+            }
+            sizeX = header.getInt();
+            sizeY = header.getInt();
+            agentsCount = header.getInt();
+            keyframeInterval = header.getInt();
+            positionScale = header.getInt();
+            velocityScale = header.getInt();
+            agentRadius = header.getInt();
+            long position = header.limit();
+            typeColours = new int[header.getInt()];
+            header = read(position, 4 * typeColours.length + 4); // colours and number of obstacles
+            position += header.limit();
+            for (int i = 0; i < typeColours.length; i++) {
+                typeColours[i] = header.getInt();
+            }
+            obstacles = new int[4 * header.getInt()];
+            header = read(position, 4 * obstacles.length + agentsCount); // obstacles and types of agents
+            position += header.limit();
+            for (int i = 0; i < obstacles.length; i++) {
+                obstacles[i] = header.getInt();
+            }
+            types = new byte[agentsCount];
+            header.get(types);
+            values = new int[TrajectoryFormat.COLUMNS][agentsCount];
+            if (!readIndex()) {
+                buildIndex(position);
+            }
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads part of file (header is read in small parts instead of mapping file, which may be gigabytes long)
+     *
+     * @param position - position in file
+     * @param bytes    - number of bytes
+     * @return buffer with read bytes, ready to get them
+     * @throws IOException if file cannot be read or is too short
+     */
+    private ByteBuffer read(long position, int bytes) throws IOException {
+        if (bytes < 0 || position + bytes > channel.size()) {
+            throw new IOException("Truncated trajectory recording");
+        }
+        ByteBuffer result = ByteBuffer.allocate(bytes);
+        while (result.hasRemaining()) {
+            if (channel.read(result, position + result.position()) < 0) {
+                throw new IOException("Truncated trajectory recording");
+            }
+        }
+        result.flip();
+        return result;
+    }
+
+    /**
+     * Reads index from footer of file
+     *
+     * @return false if there is no footer
+     * @throws IOException if file cannot be read
+     */
+    private boolean readIndex() throws IOException {
+        long size = channel.size();
+        if (size < 12) {
+            return false;
+        }
+        ByteBuffer trailer = ByteBuffer.allocate(12);
+        channel.read(trailer, size - 12);
+        trailer.flip();
+        long footer = trailer.getLong();
+        if (trailer.getInt() != TrajectoryFormat.INDEX_MAGIC || footer < 0 || footer > size - 12) {
+            return false;
+        }
+        ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, footer, size - 12 - footer);
+        if (index.getInt() != TrajectoryFormat.INDEX_MAGIC) {
+            return false;
+        }
+        firstIteration = index.getLong();
+        framesCount = index.getLong();
+        keyframes = new long[index.getInt()];
+        for (int i = 0; i < keyframes.length; i++) {
+            keyframes[i] = index.getLong();
+        }
+        framesEnd = footer;
+        return true;
+    }
+
+    /**
+     * Builds index by skipping frames (recording without footer), stops at first incomplete frame
+     *
+     * @param position - position of first frame
+     * @throws IOException if file cannot be read
+     */
+    private void buildIndex(long position) throws IOException {
+        long size = channel.size();
+        keyframes = new long[64];
+        int keyframesCount = 0;
+        framesCount = 0;
+        ByteBuffer frameStart = ByteBuffer.allocate(4 + 1 + TrajectoryFormat.MAX_VARLONG);
+        while (position + 5 <= size) {
+            frameStart.clear();
+            channel.read(frameStart, position);
+            frameStart.flip();
+            int length = frameStart.getInt();
+            if (length <= 0 || position + 4 + length > size) {
+                break;
+            }
+            boolean keyframe = frameStart.get() == TrajectoryFormat.KEYFRAME;
+            if (framesCount == 0) {
+                firstIteration = TrajectoryFormat.getVarlong(frameStart);
+            }
+            if (framesCount % keyframeInterval == 0) {
+                if (!keyframe) {
+                    break;
+                }
+                if (keyframesCount == keyframes.length) {
+                    keyframes = Arrays.copyOf(keyframes, 2 * keyframesCount);
+                }
+                keyframes[keyframesCount++] = position;
+            }
+            framesCount++;
+            position += 4 + length;
+        }
+        keyframes = Arrays.copyOf(keyframes, keyframesCount);
+        framesEnd = position;
+    }
+
+    /**
+     * Maps segment of frames starting with given keyframe
+     *
+     * @param index - index of keyframe
+     * @throws IOException if file cannot be read
+     */
+    private void mapSegment(int index) throws IOException {
+        long start = keyframes[index];
+        long end = (index + 1 < keyframes.length) ? keyframes[index + 1] : framesEnd;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        segment = index;
+    }
+
+    /**
+     * Decodes next frame of mapped segment
+     */
+    private void decodeFrame() {
+        buffer.getInt(); // length
+        boolean keyframe = buffer.get() == TrajectoryFormat.KEYFRAME;
+        TrajectoryFormat.getVarlong(buffer); // iteration, frames are consecutive
+        for (int[] column : values) {
+            for (int i = 0; i < agentsCount; i++) {
+                int value = TrajectoryFormat.getVarint(buffer);
+                column[i] = keyframe ? value : column[i] + value;
+            }
+        }
+    }
+
+    /**
+     * Moves to given frame
+     *
+     * @param target - index of frame (0 to getFramesCount() - 1)
+     * @throws IOException if file cannot be read
+     */
+    public void seek(long target) throws IOException {
+        if (target < 0 || target >= framesCount) {
+            throw new IllegalArgumentException("No frame " + target + " in recording of " + framesCount + " frames");
+        }
+        int index = (int) (target / keyframeInterval);
+        long from;
+        if (segment == index && frame >= 0 && frame <= target) {
+            from = frame + 1; // target is later in mapped segment
+        } else {
+            mapSegment(index);
+            from = (long) index * keyframeInterval;
+        }
+        for (long i = from; i <= target; i++) {
+            decodeFrame();
+        }
+        frame = target;
+    }
+
+    /**
+     * Moves to next frame
+     *
+     * @return false if current frame is the last one
+     * @throws IOException if file cannot be read
+     */
+    public boolean next() throws IOException {
+        if (frame + 1 >= framesCount) {
+            return false;
+        }
+        seek(frame + 1);
+        return true;
+    }
+
+    public int getSizeX() {
+        return sizeX;
+    }
+
+    public int getSizeY() {
+        return sizeY;
+    }
+
+    public int getAgentsCount() {
+        return agentsCount;
+    }
+
+    public int getAgentRadius() {
+        return agentRadius;
+    }
+
+    /**
+     * @return number of types of agents
+     */
+    public int getTypesCount() {
+        return typeColours.length;
+    }
+
+    /**
+     * @param type - ordinal of AgentsTypes
+     * @return colour of agents of given type (RGB)
+     */
+    public int getTypeColour(int type) {
+        return typeColours[type];
+    }
+
+    public int getObstaclesCount() {
+        return obstacles.length / 4;
+    }
+
+    /**
+     * @param i     - index of obstacle's rectangle
+     * @param value - 0 for x1, 1 for y1, 2 for x2, 3 for y2
+     * @return coordinate of rectangle
+     */
+    public int getObstacle(int i, int value) {
+        return obstacles[4 * i + value];
+    }
+
+    /**
+     * @param agent - id of agent
+     * @return type of agent (ordinal of AgentsTypes)
+     */
+    public int getType(int agent) {
+        return types[agent];
+    }
+
+    public long getFramesCount() {
+        return framesCount;
+    }
+
+    /**
+     * @return index of current frame, -1 if nothing was read yet
+     */
+    public long getFrame() {
+        return frame;
+    }
+
+    /**
+     * @return iteration of current frame
+     */
+    public long getIteration() {
+        return firstIteration + frame;
+    }
+
+    public double getPositionX(int agent) {
+        return (double) values[0][agent] / positionScale;
+    }
+
+    public double getPositionY(int agent) {
+        return (double) values[1][agent] / positionScale;
+    }
+
+    public double getVelocityX(int agent) {
+        return (double) values[2][agent] / velocityScale;
+    }
+
+    public double getVelocityY(int agent) {
+        return (double) values[3][agent] / velocityScale;
+    }
+
+    public AgentsStates getState(int agent) {
+        return AgentsStates.values()[values[4][agent]];
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        file.close();
+    }
+}
@@ -0,0 +1,233 @@
+package recording;
+
+import agents.AgentsStore;
+import agents.AgentsTypes;
+import agents.BaseAgent;
+import agents.Board;
+import org.apache.commons.math3.util.Pair;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Records trajectories of agents (positions, velocities, states) to file, see TrajectoryFormat
+ * <p/>
+ * File is written through memory-mapped chunks, so frame is encoded directly to page cache without system calls.
+ * Agents cannot be added while recording.
+ */
+public class TrajectoryRecorder implements Closeable {
+    private static final int CHUNK_SIZE = 64 << 20; // size of mapped chunk of file
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer; // mapped chunk of file
+    private long chunkStart = 0; // position of chunk in file
+
+    private final Board board;
+    private final int agentsCount; // number of recorded agents
+    private final int keyframeInterval; // number of frames between keyframes
+    private final int[][] previous; // values of columns of previous frame
+    private long frames = 0; // number of recorded frames
+    private long firstIteration = 0; // iteration of first frame
+    private long[] keyframes = new long[64]; // positions of keyframes in file
+    private int keyframesCount = 0; // number of keyframes
+
+    /**
+     * Creates file and writes header
+     *
+     * @param output           - file to write
+     * @param board            - board to record (with all agents already generated)
+     * @param keyframeInterval - number of frames between keyframes
+     * @throws IOException if file cannot be written
+     */
+    public TrajectoryRecorder(File output, Board board, int keyframeInterval) throws IOException {
+        this.board = board;
+        this.keyframeInterval = Math.max(keyframeInterval, 1);
+        agentsCount = board.getAgents().size();
+        previous = new int[TrajectoryFormat.COLUMNS][agentsCount];
+        file = new RandomAccessFile(output, "rw");
+        file.setLength(0);
+        channel = file.getChannel();
+        writeHeader();
+    }
+
+    /**
+     * Makes sure that given number of bytes can be written to mapped chunk
+     *
+     * @param bytes - number of bytes
+     * @throws IOException if file cannot be mapped
+     */
+    private void ensureCapacity(int bytes) throws IOException {
+        if (buffer == null || buffer.remaining() < bytes) {
+            long position = (buffer == null) ? 0 : chunkStart + buffer.position();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(CHUNK_SIZE, bytes));
+            chunkStart = position;
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        List<Pair<Pair<Integer, Integer>, Pair<Integer, Integer>>> rects = board.getObstaclesRect();
+        int typesCount = AgentsTypes.values().length;
+        ensureCapacity(4 * (11 + typesCount + 4 * rects.size()) + agentsCount);
+        buffer.putInt(TrajectoryFormat.MAGIC);
+        buffer.putInt(TrajectoryFormat.VERSION);
+        buffer.putInt(board.getSizeX());
+        buffer.putInt(board.getSizeY());
+        buffer.putInt(agentsCount);
+        buffer.putInt(keyframeInterval);
+        buffer.putInt(TrajectoryFormat.POSITION_SCALE);
+        buffer.putInt(TrajectoryFormat.VELOCITY_SCALE);
+        buffer.putInt(board.getParameters().agentRadius);
+        int[] colours = new int[typesCount];
+        for (BaseAgent agent : board.getAgents()) {
+            colours[agent.getType().ordinal()] = agent.getColour().getRGB();
+        }
+        buffer.putInt(typesCount);
+        for (int colour : colours) {
+            buffer.putInt(colour);
+        }
+        buffer.putInt(rects.size());
+        for (Pair<Pair<Integer, Integer>, Pair<Integer, Integer>> rect : rects) {
+            buffer.putInt(rect.getFirst().getFirst());
+            buffer.putInt(rect.getFirst().getSecond());
+            buffer.putInt(rect.getSecond().getFirst());
+            buffer.putInt(rect.getSecond().getSecond());
+        }
+        List<BaseAgent> agents = board.getAgents();
+        for (int i = 0; i < agentsCount; i++) {
+            buffer.put((byte) agents.get(i).getType().ordinal());
+        }
+    }
+
+    /**
+     * Records current state of agents as next frame
+     *
+     * @param iteration - number of iteration
+     * @throws IOException if file cannot be written
+     */
+    public void record(long iteration) throws IOException {
+        ensureCapacity(4 + 1 + TrajectoryFormat.MAX_VARLONG + TrajectoryFormat.COLUMNS * TrajectoryFormat.MAX_VARINT * agentsCount);
+        boolean keyframe = frames % keyframeInterval == 0;
+        int start = buffer.position();
+        if (keyframe) {
+            if (keyframesCount == keyframes.length) {
+                keyframes = Arrays.copyOf(keyframes, 2 * keyframesCount);
+            }
+            keyframes[keyframesCount++] = chunkStart + start;
+        }
+        if (frames == 0) {
+            firstIteration = iteration;
+        }
+        buffer.putInt(0); // length, written at the end
+        buffer.put(keyframe ? TrajectoryFormat.KEYFRAME : TrajectoryFormat.DELTA);
+        TrajectoryFormat.putVarlong(buffer, iteration);
+
+        AgentsStore store = board.getAgentsStore();
+        List<BaseAgent> agents = board.getAgents();
+        int[] column = previous[0];
+        for (int i = 0; i < agentsCount; i++) {
+            column[i] = put(column[i], (int) Math.round(store.getPositionX(i) * TrajectoryFormat.POSITION_SCALE), keyframe);
+        }
+        column = previous[1];
+        for (int i = 0; i < agentsCount; i++) {
+            column[i] = put(column[i], (int) Math.round(store.getPositionY(i) * TrajectoryFormat.POSITION_SCALE), keyframe);
+        }
+        column = previous[2];
+        for (int i = 0; i < agentsCount; i++) {
+            column[i] = put(column[i], (int) Math.round(store.getVelocityX(i) * TrajectoryFormat.VELOCITY_SCALE), keyframe);
+        }
+        column = previous[3];
+        for (int i = 0; i < agentsCount; i++) {
+            column[i] = put(column[i], (int) Math.round(store.getVelocityY(i) * TrajectoryFormat.VELOCITY_SCALE), keyframe);
+        }
+        column = previous[4];
+        for (int i = 0; i < agentsCount; i++) {
+            column[i] = put(column[i], agents.get(i).getState().ordinal(), keyframe);
+        }
+        buffer.putInt(start, buffer.position() - start - 4);
+        frames++;
+    }
+
+    /**
+     * Writes single value of column
+     *
+     * @param previous - value from previous frame
+     * @param value    - current value
+     * @param keyframe - if true value is written as is, otherwise as difference
+     * @return current value
+     */
+    private int put(int previous, int value, boolean keyframe) {
+        TrajectoryFormat.putVarint(buffer, keyframe ? value : value - previous);
+        return value;
+    }
+
+    /**
+     * @return number of recorded frames
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Writes index of keyframes, cuts off unused part of last chunk and closes file
+     * <p/>
+     * Last chunk is forced to file and dropped, index is written through channel. If file cannot be cut while chunks
+     * are still mapped (e.g. on Windows, until they are garbage collected), position of index is repeated at the end
+     * of file, where TrajectoryReader looks for it.
+     *
+     * @throws IOException if file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            long footer = chunkStart + buffer.position();
+            ByteBuffer index = ByteBuffer.allocate(4 + 8 + 8 + 4 + 8 * keyframesCount + 8 + 4);
+            index.putInt(TrajectoryFormat.INDEX_MAGIC);
+            index.putLong(firstIteration);
+            index.putLong(frames);
+            index.putInt(keyframesCount);
+            for (int i = 0; i < keyframesCount; i++) {
+                index.putLong(keyframes[i]);
+            }
+            index.putLong(footer);
+            index.putInt(TrajectoryFormat.INDEX_MAGIC);
+            index.flip();
+            buffer.force();
+            buffer = null;
+            boolean truncated;
+            try {
+                channel.truncate(footer);
+                truncated = true;
+            } catch (IOException e) {
+                truncated = false;
+            }
+            write(index.duplicate(), footer);
+            if (!truncated) {
+                index.position(index.limit() - 12);
+                write(index, channel.size() - 12);
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Writes whole buffer to file through channel
+     *
+     * @param bytes    - bytes to write
+     * @param position - position in file
+     * @throws IOException if file cannot be written
+     */
+    private void write(ByteBuffer bytes, long position) throws IOException {
+        while (bytes.hasRemaining()) {
+            position += channel.write(bytes, position);
+        }
+    }
+}
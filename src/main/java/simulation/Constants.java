@@ -5,6 +5,8 @@ package simulation;
  */
 public abstract class Constants {
     public static final double timePeriod = 1;
+    public static final int moveStripWidth = 32; // width of board strips moved in parallel
+    public static final int recordingKeyframeInterval = 100; // number of recorded frames between keyframes
     /* Helbing's model constants */
     public static final int a = 2000;
     public static final double b = 0.4;
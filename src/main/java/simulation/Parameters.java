@@ -4,24 +4,74 @@ import org.apache.commons.math3.util.Pair;
 
 /**
  * Parameters of simulation - values which can be changed by user
+ * <p/>
+ * Every simulation (board) has its own parameters, so many simulations can run in one JVM (see ParameterSweep)
  */
-public abstract class Parameters {
+public class Parameters {
     /* Parameters to set before creating objects */
-    public static int agentRadius = 3; // agent radius
-    public static int agentRadiusGUI = 3; // agent radius (set in GUI)
-    public static int crowdSparsity = 1;  // distance between generated agents
-    public static int partOfModerate = 15; // percent of moderate active agents
-    public static int partOfTroubleMakers = 5; // percent of trouble makers
+    public int agentRadius = 3; // agent radius
+    public int agentRadiusGUI = 3; // agent radius (set in GUI)
+    public int crowdSparsity = 1;  // distance between generated agents
+    public int partOfModerate = 15; // percent of moderate active agents
+    public int partOfTroubleMakers = 5; // percent of trouble makers
+    public long seed = System.currentTimeMillis(); // seed of random generators (used when board is initialized)
 
     /* Parameters to set before simulation start */
-    public static int fps = 30;  /* 2 to 50 */
+    public int fps = 30;  /* 2 to 50 */
 
     /* Whenever */
-    public static double maxVelocityPassive = 1.2; /* 0.5 to 2 */
-    public static double maxVelocityModerate = 1.6; /* 0.5 to 2 */
-    public static double maxVelocityTrouble = 2.0; /* 0.5 to 2 */
-    public static int viewRange = 10; // view range of agent
+    public double maxVelocityPassive = 1.2; /* 0.5 to 2 */
+    public double maxVelocityModerate = 1.6; /* 0.5 to 2 */
+    public double maxVelocityTrouble = 2.0; /* 0.5 to 2 */
+    public int viewRange = 10; // view range of agent
+    public boolean fastMath = false; // use interpolated tables of exponential forces instead of Math.exp
+    public double fastMathError = 1e-4; // max relative error of tables of forces (if fastMath)
+    public int neighborSkin = 0; // margin of neighbors lists reused in next iterations (Verlet lists, pays off only for slow agents), 0 - found every iteration
+    public boolean continuousPositions = false; // exact (double) positions of agents, board fields only index obstacles
+    public boolean batchedRendering = true; // draw agents into image buffer (false - every agent drawn as shape)
+    public double replaySpeed = 1.0; // speed of replay (multiplier of fps)
 
     /* Parameter to set before simulation start */
-    public static Pair<Integer, Integer> desiredPoint = new Pair<>(350, 20); // can be chosen by pointing mouse
+    public Pair<Integer, Integer> desiredPoint = new Pair<>(350, 20); // can be chosen by pointing mouse
+
+    /**
+     * Creates default parameters
+     */
+    public Parameters() {
+    }
+
+    /**
+     * Creates copy of parameters
+     *
+     * @param other - parameters to copy
+     */
+    public Parameters(Parameters other) {
+        set(other);
+    }
+
+    /**
+     * Sets all parameters to values of other ones
+     *
+     * @param other - parameters to copy
+     */
+    public void set(Parameters other) {
+        agentRadius = other.agentRadius;
+        agentRadiusGUI = other.agentRadiusGUI;
+        crowdSparsity = other.crowdSparsity;
+        partOfModerate = other.partOfModerate;
+        partOfTroubleMakers = other.partOfTroubleMakers;
+        seed = other.seed;
+        fps = other.fps;
+        maxVelocityPassive = other.maxVelocityPassive;
+        maxVelocityModerate = other.maxVelocityModerate;
+        maxVelocityTrouble = other.maxVelocityTrouble;
+        viewRange = other.viewRange;
+        fastMath = other.fastMath;
+        fastMathError = other.fastMathError;
+        continuousPositions = other.continuousPositions;
+        neighborSkin = other.neighborSkin;
+        batchedRendering = other.batchedRendering;
+        replaySpeed = other.replaySpeed;
+        desiredPoint = other.desiredPoint;
+    }
 }
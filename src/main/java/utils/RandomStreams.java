@@ -0,0 +1,39 @@
+package utils;
+
+/**
+ * Independent streams of random numbers derived from single seed (SplitMix64)
+ * <p/>
+ * State of every stream is single long, so streams can be kept in plain arrays and used concurrently without locks.
+ * Numbers of stream depend only on seed and index of stream.
+ */
+public abstract class RandomStreams {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L; // increment of state (odd, golden ratio)
+
+    /**
+     * @param seed   - main seed
+     * @param stream - index of stream
+     * @return initial state of stream
+     */
+    public static long initialState(long seed, int stream) {
+        return mix(seed + GOLDEN_GAMMA * (stream + 1L));
+    }
+
+    /**
+     * @param state - state of stream
+     * @return next state of stream
+     */
+    public static long advance(long state) {
+        return state + GOLDEN_GAMMA;
+    }
+
+    /**
+     * @param state - state of stream (already advanced)
+     * @return random 64 bits
+     */
+    public static long mix(long state) {
+        long z = state;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,6 +1,5 @@
 package utils;
 
-import org.apache.commons.math3.random.MersenneTwister;
 import org.apache.commons.math3.util.Pair;
 
 import java.util.LinkedList;
@@ -9,8 +8,6 @@ import java.util.LinkedList;
  * Variety of useful functions
  */
 public abstract class Utils {
-    public static final MersenneTwister rand = new MersenneTwister(System.currentTimeMillis());
-
     /**
      * Search points in circle with middle in point (x,y) and radius r
      *
@@ -23,7 +20,7 @@ public abstract class Utils {
         LinkedList<Pair<Integer, Integer>> returnList = new LinkedList<>();
         for (int i = x - r; i <= x + r; i++) {
             for (int j = y - r; j <= y + r; j++) {
-                if ((Math.pow(x - i, 2) + Math.pow(y - j, 2)) <= r * r) {
+                if ((x - i) * (x - i) + (y - j) * (y - j) <= r * r) {
                     returnList.add(new Pair<>(i, j));
                 }
             }
@@ -39,7 +36,7 @@ public abstract class Utils {
      * @return x^2 + y^2
      */
     private static double calculateSumOfSquares(double x, double y) {
-        return Math.pow(x, 2) + Math.pow(y, 2);
+        return x * x + y * y;
     }
 
     /**
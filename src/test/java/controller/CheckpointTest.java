@@ -0,0 +1,134 @@
+package controller;
+
+import agents.Policeman;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import simulation.Parameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips of checkpoints - simulation restored from checkpoint continues exactly as the saved one
+ */
+public class CheckpointTest {
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 250;
+    private static final int MAX_TICKS_TO_EXCESS = 400; // bound of ticks before crowd pushes police cordon
+    private static final int COMPARED_TICKS = 50; // ticks compared after restore
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SimController original, restored;
+
+    @After
+    public void tearDown() {
+        if (original != null) {
+            original.shutdown();
+        }
+        if (restored != null) {
+            restored.shutdown();
+        }
+    }
+
+    @Test
+    public void restoresGridSimulation() throws IOException {
+        roundTrip(parameters(), 20);
+    }
+
+    @Test
+    public void restoresContinuousSimulation() throws IOException {
+        Parameters parameters = parameters();
+        parameters.continuousPositions = true;
+        roundTrip(parameters, 20);
+    }
+
+    @Test
+    public void restoresSimulationWithNeighborLists() throws IOException {
+        Parameters parameters = parameters();
+        parameters.neighborSkin = 4;
+        roundTrip(parameters, 20);
+    }
+
+    @Test
+    public void restoresForcesGivenToOtherPolicemen() throws IOException {
+        original = start(parameters());
+        int ticks = 0;
+        while (!anyExcessOfForce(original)) {
+            assertTrue("Crowd has not pushed police cordon", ticks++ < MAX_TICKS_TO_EXCESS);
+            original.step();
+        }
+
+        compareAfterRestore();
+    }
+
+    /**
+     * Steps simulation, saves checkpoint, restores it in new controller and compares both simulations
+     *
+     * @param parameters - parameters of simulation
+     * @param ticks      - ticks before checkpoint
+     */
+    private void roundTrip(Parameters parameters, int ticks) throws IOException {
+        original = start(parameters);
+        for (int i = 0; i < ticks; i++) {
+            original.step();
+        }
+        compareAfterRestore();
+    }
+
+    /**
+     * Restores checkpoint of original simulation in new controller, compares checksums after every tick
+     * and whole states (saved as checkpoints) after the last one
+     */
+    private void compareAfterRestore() throws IOException {
+        File file = folder.newFile("checkpoint.bin");
+        original.saveCheckpoint(file);
+        restored = new SimController(1, new Parameters(original.getParameters()));
+        restored.restoreCheckpoint(file);
+        restored.prepareSimulation();
+        assertEquals(checksum(original), checksum(restored));
+        for (int i = 1; i <= COMPARED_TICKS; i++) {
+            original.step();
+            restored.step();
+            assertEquals("Tick " + i + " after restore", checksum(original), checksum(restored));
+        }
+        File originalState = folder.newFile("original.bin"), restoredState = folder.newFile("restored.bin");
+        original.saveCheckpoint(originalState);
+        restored.saveCheckpoint(restoredState);
+        assertArrayEquals("State " + COMPARED_TICKS + " ticks after restore", Files.readAllBytes(originalState.toPath()),
+                Files.readAllBytes(restoredState.toPath()));
+    }
+
+    private static Parameters parameters() {
+        Parameters parameters = new Parameters();
+        parameters.seed = 42;
+        return parameters;
+    }
+
+    private static SimController start(Parameters parameters) {
+        SimController controller = new SimController(1, parameters);
+        controller.initialize(WIDTH, HEIGHT);
+        HeadlessSimulation.buildDefaultScenario(controller, WIDTH, HEIGHT);
+        controller.prepareSimulation();
+        return controller;
+    }
+
+    private static boolean anyExcessOfForce(SimController controller) {
+        for (Policeman pol : controller.getBoard().getPolicemen()) {
+            if (pol.hasExcessOfForce()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long checksum(SimController controller) {
+        return HeadlessSimulation.checksum(controller.getBoard().getAgentsStore());
+    }
+}
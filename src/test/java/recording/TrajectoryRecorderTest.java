@@ -0,0 +1,179 @@
+package recording;
+
+import agents.AgentsStore;
+import agents.BaseAgent;
+import controller.HeadlessSimulation;
+import controller.SimController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import simulation.Parameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips of recordings - frames written by TrajectoryRecorder and read back by TrajectoryReader
+ */
+public class TrajectoryRecorderTest {
+    private static final int KEYFRAME_INTERVAL = 4; // frames 0, 4, 8 are keyframes, others are deltas
+    private static final int FRAMES = 11;
+    private static final long FIRST_ITERATION = 0;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SimController controller;
+    private final List<int[][]> expected = new ArrayList<>(); // values of columns of recorded frames
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        Parameters parameters = new Parameters();
+        parameters.seed = 42;
+        controller = new SimController(1, parameters);
+        controller.initialize(200, 160);
+        HeadlessSimulation.buildDefaultScenario(controller, 200, 160);
+        controller.prepareSimulation();
+        file = folder.newFile("recording.bin");
+        TrajectoryRecorder recorder = new TrajectoryRecorder(file, controller.getBoard(), KEYFRAME_INTERVAL);
+        for (int i = 0; i < FRAMES; i++) {
+            recorder.record(FIRST_ITERATION + i);
+            expected.add(currentValues());
+            controller.step();
+        }
+        recorder.close();
+    }
+
+    @After
+    public void tearDown() {
+        controller.shutdown();
+    }
+
+    /**
+     * @return values of columns of current state, as stored in recording
+     */
+    private int[][] currentValues() {
+        AgentsStore store = controller.getBoard().getAgentsStore();
+        List<BaseAgent> agents = controller.getBoard().getAgents();
+        int[][] values = new int[TrajectoryFormat.COLUMNS][agents.size()];
+        for (int i = 0; i < agents.size(); i++) {
+            values[0][i] = (int) Math.round(store.getPositionX(i) * TrajectoryFormat.POSITION_SCALE);
+            values[1][i] = (int) Math.round(store.getPositionY(i) * TrajectoryFormat.POSITION_SCALE);
+            values[2][i] = (int) Math.round(store.getVelocityX(i) * TrajectoryFormat.VELOCITY_SCALE);
+            values[3][i] = (int) Math.round(store.getVelocityY(i) * TrajectoryFormat.VELOCITY_SCALE);
+            values[4][i] = agents.get(i).getState().ordinal();
+        }
+        return values;
+    }
+
+    /**
+     * Checks values of current frame of reader
+     */
+    private void assertFrame(TrajectoryReader reader, int frame) {
+        int[][] values = expected.get(frame);
+        assertEquals(frame, reader.getFrame());
+        assertEquals(FIRST_ITERATION + frame, reader.getIteration());
+        for (int i = 0; i < reader.getAgentsCount(); i++) {
+            assertEquals(values[0][i], Math.round(reader.getPositionX(i) * TrajectoryFormat.POSITION_SCALE));
+            assertEquals(values[1][i], Math.round(reader.getPositionY(i) * TrajectoryFormat.POSITION_SCALE));
+            assertEquals(values[2][i], Math.round(reader.getVelocityX(i) * TrajectoryFormat.VELOCITY_SCALE));
+            assertEquals(values[3][i], Math.round(reader.getVelocityY(i) * TrajectoryFormat.VELOCITY_SCALE));
+            assertEquals(values[4][i], reader.getState(i).ordinal());
+        }
+    }
+
+    private void assertAllFrames() throws IOException {
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            assertEquals(controller.getBoard().getAgents().size(), reader.getAgentsCount());
+            assertEquals(FRAMES, reader.getFramesCount());
+            for (int frame = 0; frame < FRAMES; frame++) {
+                assertTrue(reader.next());
+                assertFrame(reader, frame);
+            }
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void readsKeyframesAndDeltaFrames() throws IOException {
+        assertTrue(FRAMES > 2 * KEYFRAME_INTERVAL);
+        assertAllFrames();
+    }
+
+    @Test
+    public void readsNegativeDeltas() throws IOException {
+        boolean negative = false; // crowd goes up, so positions y decrease
+        for (int frame = 1; frame < FRAMES && !negative; frame++) {
+            for (int i = 0; i < expected.get(frame)[1].length; i++) {
+                negative |= expected.get(frame)[1][i] < expected.get(frame - 1)[1][i];
+            }
+        }
+        assertTrue("recording has no negative delta", negative);
+        assertAllFrames();
+    }
+
+    @Test
+    public void encodesVarintsOfAnySign() {
+        int[] values = {0, 1, -1, 63, -64, 64, -65, 8191, -8192, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * TrajectoryFormat.MAX_VARINT + 2 * TrajectoryFormat.MAX_VARLONG);
+        for (int value : values) {
+            TrajectoryFormat.putVarint(buffer, value);
+        }
+        TrajectoryFormat.putVarlong(buffer, Long.MIN_VALUE);
+        TrajectoryFormat.putVarlong(buffer, -300);
+        buffer.flip();
+        for (int value : values) {
+            assertEquals(value, TrajectoryFormat.getVarint(buffer));
+        }
+        assertEquals(Long.MIN_VALUE, TrajectoryFormat.getVarlong(buffer));
+        assertEquals(-300, TrajectoryFormat.getVarlong(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void seeksAcrossKeyframes() throws IOException {
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            reader.seek(KEYFRAME_INTERVAL + 2); // delta frame after second keyframe
+            assertFrame(reader, KEYFRAME_INTERVAL + 2);
+            reader.seek(KEYFRAME_INTERVAL - 1); // back, to the last delta frame before it
+            assertFrame(reader, KEYFRAME_INTERVAL - 1);
+            reader.seek(2 * KEYFRAME_INTERVAL + 1); // forward over two keyframes
+            assertFrame(reader, 2 * KEYFRAME_INTERVAL + 1);
+            reader.seek(0);
+            assertFrame(reader, 0);
+        }
+    }
+
+    @Test
+    public void indexesFileWithoutFooter() throws IOException {
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(raw.length() - 12);
+            long footer = raw.readLong();
+            assertEquals(TrajectoryFormat.INDEX_MAGIC, raw.readInt());
+            raw.setLength(footer); // as if recording was interrupted
+        }
+        assertAllFrames();
+    }
+
+    @Test
+    public void findsFooterOfNotTruncatedFile() throws IOException {
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            byte[] trailer = new byte[12];
+            raw.seek(raw.length() - 12);
+            raw.readFully(trailer);
+            raw.setLength(raw.length() + 1000); // unused part of mapped chunk, left when file cannot be cut
+            raw.seek(raw.length() - 12);
+            raw.write(trailer);
+        }
+        assertAllFrames();
+    }
+}